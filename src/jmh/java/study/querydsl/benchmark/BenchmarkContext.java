@@ -0,0 +1,76 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벤치마크용 스프링 컨텍스트. 인메모리 H2 에 회원 데이터를 채워서 띄운다.
+ */
+final class BenchmarkContext {
+
+    static final int TEAM_COUNT = 10;
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String name) {
+        // application.yml 보다 우선하도록 커맨드라인 인자로 전달
+        return new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.profiles.active=bench", // local 프로필의 InitMember 데이터 제외
+                        "--spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--decorator.datasource.enabled=false",
+                        "--querydsl.n-plus-one.enabled=false", // SQL 마다 fingerprint 를 계산하지 않도록
+                        // 캐시/추정값이 아니라 쿼리 자체를 측정하도록 결과 캐시와 메모리 인덱스를 끈다.
+                        "--querydsl.second-level-cache.enabled=false", // 2차 캐시 적중 없이 매번 SQL 실행
+                        "--querydsl.count-cache.enabled=false",
+                        "--querydsl.search-cache.enabled=false",
+                        "--querydsl.near-cache.enabled=false",
+                        "--querydsl.username-index.enabled=false",
+                        "--querydsl.team-stats.enabled=false", // 전체 수 추정(approximate count) 없이 count 쿼리 실행
+                        "--logging.level.org.hibernate.SQL=warn",
+                        "--logging.level.root=warn");
+    }
+
+    // 팀 10개, 회원 memberCount 명. member{i}, 나이 10~69
+    static void seed(ConfigurableApplicationContext context, int memberCount) {
+        EntityManager em = context.getBean(EntityManager.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        List<Long> teamIds = tx.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < TEAM_COUNT; i++) {
+                Team team = new Team("team" + i);
+                em.persist(team);
+                ids.add(team.getId());
+            }
+            return ids;
+        });
+
+        int chunk = 1_000;
+        for (int from = 0; from < memberCount; from += chunk) {
+            int start = from;
+            tx.executeWithoutResult(status -> {
+                for (int i = start; i < Math.min(start + chunk, memberCount); i++) {
+                    Member member = new Member("member" + i, 10 + i % 60);
+                    member.setTeam(em.getReference(Team.class, teamIds.get(i % TEAM_COUNT)));
+                    em.persist(member);
+                }
+                em.flush();
+                em.clear();
+            });
+        }
+    }
+}
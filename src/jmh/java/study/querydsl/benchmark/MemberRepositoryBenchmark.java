@@ -0,0 +1,113 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+/**
+ * 리포지토리 검색 방식별 성능 비교. 캐시는 모두 끄고 쿼리만 측정한다. (BenchmarkContext)
+ * ./gradlew jmh -PjmhInclude=MemberRepositoryBenchmark
+ */
+@State(Scope.Benchmark)
+public class MemberRepositoryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int memberCount;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private MemberRepository memberRepository;
+
+    private MemberSearchCondition condition;
+    private PageRequest firstPage;
+    private PageRequest deepPage;
+    private String username;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("member" + memberCount);
+        BenchmarkContext.seed(context, memberCount);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        memberRepository = context.getBean(MemberRepository.class);
+
+        // 팀 1개(10%) + 나이 범위(약 1/3) 조건
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(39);
+
+        firstPage = PageRequest.of(0, 20);
+        deepPage = PageRequest.of(memberCount / 20 / 30, 20);
+        username = "member" + (memberCount / 2);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchByBuilder() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchByWhere() {
+        return memberJpaRepository.searchByWhere(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> search() {
+        return memberRepository.search(condition);
+    }
+
+    // 같은 조건을 미리 만들어 둔 JPQL 템플릿으로 실행 (searchByWhere 와 비교)
+    @Benchmark
+    public List<MemberTeamDto> searchByTemplate() {
+        return memberJpaRepository.searchByTemplate(condition);
+    }
+
+    @Benchmark
+    public List<Member> findByUsername_JPQL() {
+        return memberJpaRepository.findByUsername(username);
+    }
+
+    @Benchmark
+    public List<Member> findByUsername_Querydsl() {
+        return memberJpaRepository.findByUsername_Querydsl(username);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPagingSimple() {
+        return memberRepository.searchPagingSimple(condition, firstPage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPagingComplex() {
+        return memberRepository.searchPagingComplex(condition, firstPage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPagingComplexTwo() {
+        return memberRepository.searchPagingComplexTwo(condition, firstPage);
+    }
+
+    @Benchmark
+    public Page<MemberTeamDto> searchPagingComplexTwo_deepPage() {
+        return memberRepository.searchPagingComplexTwo(condition, deepPage);
+    }
+}
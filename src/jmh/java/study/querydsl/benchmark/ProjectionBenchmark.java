@@ -0,0 +1,109 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Projections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.LambdaProjections;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * DB 없이 한 행을 DTO 로 만드는 비용만 비교한다. (FactoryExpression.newInstance)
+ * ./gradlew jmh -PjmhInclude=ProjectionBenchmark
+ */
+@State(Scope.Benchmark)
+public class ProjectionBenchmark {
+
+    private FactoryExpression<MemberDto> reflectionBean;
+    private FactoryExpression<MemberDto> reflectionFields;
+    private FactoryExpression<MemberDto> reflectionConstructor;
+    private FactoryExpression<MemberDto> lambdaBean;
+    private FactoryExpression<MemberDto> lambdaFields;
+    private FactoryExpression<MemberDto> lambdaConstructor;
+    private FactoryExpression<MemberDto> queryProjection;
+
+    private FactoryExpression<MemberTeamDto> teamReflectionConstructor;
+    private FactoryExpression<MemberTeamDto> teamLambdaConstructor;
+    private FactoryExpression<MemberTeamDto> teamQueryProjection;
+
+    private Object[] memberRow;
+    private Object[] memberTeamRow;
+
+    @Setup
+    public void setUp() {
+        reflectionBean = Projections.bean(MemberDto.class, member.username, member.age);
+        reflectionFields = Projections.fields(MemberDto.class, member.username, member.age);
+        reflectionConstructor = Projections.constructor(MemberDto.class, member.username, member.age);
+        lambdaBean = LambdaProjections.bean(MemberDto.class, member.username, member.age);
+        lambdaFields = LambdaProjections.fields(MemberDto.class, member.username, member.age);
+        lambdaConstructor = LambdaProjections.constructor(MemberDto.class, member.username, member.age);
+        queryProjection = new QMemberDto(member.username, member.age);
+
+        teamReflectionConstructor = Projections.constructor(MemberTeamDto.class,
+                member.id, member.username, member.age, team.id, team.name);
+        teamLambdaConstructor = LambdaProjections.constructor(MemberTeamDto.class,
+                member.id, member.username, member.age, team.id, team.name);
+        teamQueryProjection = new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name);
+
+        memberRow = new Object[]{"member1", 10};
+        memberTeamRow = new Object[]{1L, "member1", 10, 2L, "teamA"};
+    }
+
+    @Benchmark
+    public MemberDto reflectionBean() {
+        return reflectionBean.newInstance(memberRow.clone());
+    }
+
+    @Benchmark
+    public MemberDto reflectionFields() {
+        return reflectionFields.newInstance(memberRow.clone());
+    }
+
+    @Benchmark
+    public MemberDto reflectionConstructor() {
+        return reflectionConstructor.newInstance(memberRow.clone());
+    }
+
+    @Benchmark
+    public MemberDto lambdaBean() {
+        return lambdaBean.newInstance(memberRow.clone());
+    }
+
+    @Benchmark
+    public MemberDto lambdaFields() {
+        return lambdaFields.newInstance(memberRow.clone());
+    }
+
+    @Benchmark
+    public MemberDto lambdaConstructor() {
+        return lambdaConstructor.newInstance(memberRow.clone());
+    }
+
+    @Benchmark
+    public MemberDto queryProjection() {
+        return queryProjection.newInstance(memberRow.clone());
+    }
+
+    @Benchmark
+    public MemberTeamDto memberTeam_reflectionConstructor() {
+        return teamReflectionConstructor.newInstance(memberTeamRow.clone());
+    }
+
+    @Benchmark
+    public MemberTeamDto memberTeam_lambdaConstructor() {
+        return teamLambdaConstructor.newInstance(memberTeamRow.clone());
+    }
+
+    @Benchmark
+    public MemberTeamDto memberTeam_queryProjection() {
+        return teamQueryProjection.newInstance(memberTeamRow.clone());
+    }
+}
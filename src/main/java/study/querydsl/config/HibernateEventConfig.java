@@ -0,0 +1,31 @@
+package study.querydsl.config;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.repository.support.EntityChangeNotifier;
+import study.querydsl.repository.support.HibernateEntityChangeListener;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+@Configuration
+@RequiredArgsConstructor
+public class HibernateEventConfig {
+
+    private final EntityManagerFactory emf;
+    private final EntityChangeNotifier notifier;
+
+    @PostConstruct
+    public void registerListeners() {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+
+        HibernateEntityChangeListener listener = new HibernateEntityChangeListener(notifier);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, listener);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, listener);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, listener);
+    }
+}
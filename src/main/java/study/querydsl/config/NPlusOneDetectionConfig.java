@@ -0,0 +1,37 @@
+package study.querydsl.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+import study.querydsl.repository.support.NPlusOneDetector;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@Configuration
+public class NPlusOneDetectionConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(NPlusOneDetector detector) {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, detector);
+    }
+
+    // OSIV 로 컨트롤러/뷰에서 일어나는 지연 로딩까지 HTTP 요청 단위로 센다.
+    @Bean
+    public OncePerRequestFilter nPlusOneDetectionFilter(NPlusOneDetector detector) {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                try (NPlusOneDetector.Scope scope = detector.open(request.getMethod() + " " + request.getRequestURI())) {
+                    filterChain.doFilter(request, response);
+                }
+            }
+        };
+    }
+}
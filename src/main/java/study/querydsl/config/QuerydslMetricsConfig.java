@@ -0,0 +1,46 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.repository.MemberSearchQueryTemplates;
+import study.querydsl.repository.support.CountCache;
+import study.querydsl.repository.support.MemberNearCache;
+import study.querydsl.repository.support.SearchResultCache;
+
+@Configuration
+public class QuerydslMetricsConfig {
+
+    // 기존 hit/miss 카운터를 /actuator/prometheus 로 노출
+    @Bean
+    public MeterBinder querydslCacheMetrics(CountCache countCache, MemberSearchQueryTemplates searchQueryTemplates,
+                                            MemberNearCache nearCache, SearchResultCache searchResultCache) {
+        return registry -> {
+            FunctionCounter.builder("querydsl.cache.requests", countCache, CountCache::getHits)
+                    .tags("cache", "count", "result", "hit").register(registry);
+            FunctionCounter.builder("querydsl.cache.requests", countCache, CountCache::getMisses)
+                    .tags("cache", "count", "result", "miss").register(registry);
+            FunctionCounter.builder("querydsl.cache.requests", searchQueryTemplates, MemberSearchQueryTemplates::getHits)
+                    .tags("cache", "search-template", "result", "hit").register(registry);
+            FunctionCounter.builder("querydsl.cache.requests", searchQueryTemplates, MemberSearchQueryTemplates::getMisses)
+                    .tags("cache", "search-template", "result", "miss").register(registry);
+            FunctionCounter.builder("querydsl.cache.requests", nearCache, MemberNearCache::getHits)
+                    .tags("cache", "near", "result", "hit").register(registry);
+            FunctionCounter.builder("querydsl.cache.requests", nearCache, MemberNearCache::getMisses)
+                    .tags("cache", "near", "result", "miss").register(registry);
+            // stale: 무효/만료된 결과를 반환하고 백그라운드에서 다시 조회한 경우
+            FunctionCounter.builder("querydsl.cache.requests", searchResultCache, SearchResultCache::getHits)
+                    .tags("cache", "search-result", "result", "hit").register(registry);
+            FunctionCounter.builder("querydsl.cache.requests", searchResultCache, SearchResultCache::getStaleHits)
+                    .tags("cache", "search-result", "result", "stale").register(registry);
+            FunctionCounter.builder("querydsl.cache.requests", searchResultCache, SearchResultCache::getMisses)
+                    .tags("cache", "search-result", "result", "miss").register(registry);
+            Gauge.builder("querydsl.cache.hit.ratio", searchResultCache, SearchResultCache::getHitRatio)
+                    .tags("cache", "search-result").register(registry);
+            Gauge.builder("querydsl.cache.size", searchResultCache, SearchResultCache::size)
+                    .tags("cache", "search-result").register(registry);
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import study.querydsl.repository.support.ReadWriteRoutingDataSource;
+import study.querydsl.repository.support.ReplicaPool;
+import study.querydsl.repository.support.RoutingDataSourceProperties;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 읽기/쓰기 분리. querydsl.routing.enabled=true 일 때 spring.datasource 를 primary 로,
+ * querydsl.routing.replicas 를 읽기 전용 replica 로 사용한다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "querydsl.routing", name = "enabled", havingValue = "true")
+public class RoutingDataSourceConfig {
+
+    // replica 풀은 빈이 아니므로 직접 닫는다. (primary 는 빈으로 닫힌다.)
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean(destroyMethod = "close")
+    public ReplicaPool replicaPool(RoutingDataSourceProperties properties) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (RoutingDataSourceProperties.Replica replica : properties.getReplicas()) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(replica.getUrl())
+                    .username(replica.getUsername())
+                    .password(replica.getPassword())
+                    .build();
+            dataSource.setPoolName(replica.getName());
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            replicas.put(replica.getName(), register(dataSource));
+        }
+        ReplicaPool replicaPool = new ReplicaPool(replicas, properties);
+        replicaPool.start();
+        return replicaPool;
+    }
+
+    // Boot 의 자동 설정과 같이 spring.datasource.hikari.* (maximum-pool-size 등)를 바인딩한다.
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName(ReadWriteRoutingDataSource.PRIMARY);
+        return primary;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaPool replicaPool) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primaryDataSource, replicaPool));
+    }
+
+    // OSIV 로 요청 동안 커넥션을 잡고 있으면 첫 트랜잭션의 라우팅이 요청 끝까지 유지되므로 트랜잭션마다 반납한다.
+    @Bean
+    public HibernatePropertiesCustomizer routingConnectionHandlingCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.CONNECTION_HANDLING,
+                "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+
+    private HikariDataSource register(HikariDataSource dataSource) {
+        pools.add(dataSource);
+        return dataSource;
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.config;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.expiry.ExpiryPolicy;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Hibernate 2차 캐시 설정. 리전(캐시) 크기와 만료 정책은 querydsl.second-level-cache.regions 로 지정한다.
+ * 설정되지 않은 리전은 만들지 않으므로(missing_cache_strategy=fail) @Cache 리전 이름을 추가하면 설정도 추가해야 한다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "querydsl.second-level-cache", name = "enabled", matchIfMissing = true)
+public class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(SecondLevelCacheProperties properties) {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        ClassLoader classLoader = getClass().getClassLoader();
+        // 테스트처럼 컨텍스트가 여러 개 뜨는 경우 리전이 겹치지 않도록 컨텍스트마다 별도 CacheManager 사용
+        URI uri = URI.create("urn:querydsl:second-level-cache:" + UUID.randomUUID());
+        CacheManager cacheManager = provider.getCacheManager(uri, new DefaultConfiguration(classLoader));
+
+        for (Map.Entry<String, SecondLevelCacheProperties.Region> entry : properties.getRegions().entrySet()) {
+            SecondLevelCacheProperties.Region region = entry.getValue();
+            CacheConfigurationBuilder<Object, Object> builder = CacheConfigurationBuilder
+                    .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(region.getMaxEntries()))
+                    .withExpiry(expiryOf(region));
+            cacheManager.createCache(entry.getKey(), Eh107Configuration.fromEhcacheCacheConfiguration(builder));
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager,
+                                                                    SecondLevelCacheProperties properties) {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+            hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            // Member 저장/수정/삭제 시 Team.members(연관관계 반대편) 컬렉션 캐시를 제거
+            hibernateProperties.put(AvailableSettings.AUTO_EVICT_COLLECTION_CACHE, true);
+            hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, properties.isStatistics());
+        };
+    }
+
+    private static ExpiryPolicy<Object, Object> expiryOf(SecondLevelCacheProperties.Region region) {
+        switch (region.getExpiry()) {
+            case TTI:
+                return ExpiryPolicyBuilder.timeToIdleExpiration(region.getTtl());
+            case NONE:
+                return ExpiryPolicyBuilder.noExpiration();
+            default:
+                return ExpiryPolicyBuilder.timeToLiveExpiration(region.getTtl());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package study.querydsl.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.second-level-cache")
+public class SecondLevelCacheProperties {
+
+    private boolean enabled = true;
+    // 리전별 hit/miss 통계 수집 (hibernate.generate_statistics)
+    private boolean statistics = true;
+    private Map<String, Region> regions = new LinkedHashMap<>();
+
+    public SecondLevelCacheProperties() {
+        regions.put(Team.CACHE_REGION, new Region(1_000, Duration.ofMinutes(30), Expiry.TTL));
+        regions.put(Team.MEMBERS_CACHE_REGION, new Region(1_000, Duration.ofMinutes(30), Expiry.TTL));
+        regions.put(Member.CACHE_REGION, new Region(100_000, Duration.ofMinutes(10), Expiry.TTI));
+    }
+
+    @Getter @Setter
+    public static class Region {
+
+        // 최대 엔트리 수. 넘치면 Ehcache 가 오래 사용되지 않은 엔트리를 제거한다.
+        private long maxEntries = 10_000;
+        private Duration ttl = Duration.ofMinutes(10);
+        private Expiry expiry = Expiry.TTL;
+
+        public Region() {
+        }
+
+        public Region(long maxEntries, Duration ttl, Expiry expiry) {
+            this.maxEntries = maxEntries;
+            this.ttl = ttl;
+            this.expiry = expiry;
+        }
+    }
+
+    public enum Expiry {
+        TTL, // 저장 후 ttl 이 지나면 만료
+        TTI, // 마지막 조회 후 ttl 이 지나면 만료
+        NONE // 만료 없이 maxEntries 초과 시에만 제거
+    }
+}
@@ -3,43 +3,23 @@ package study.querydsl.controller;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import study.querydsl.entity.Member;
-import study.querydsl.entity.Team;
 
 import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-import javax.persistence.PersistenceContext;
 
-@Profile("local")
+/**
+ * local: 팀 2개(teamA, teamB), 회원 100명 고정 데이터 (기본값, mode=fixed)
+ * perf: application.yml 의 querydsl.seed 분포 설정으로 대량 데이터 생성 (mode=generated)
+ */
+@Profile({"local", "perf"})
 @Component
 @RequiredArgsConstructor
 public class InitMember {
 
-    private final InitMemberService initMemberService;
+    private final MemberDataGenerator memberDataGenerator;
+    private final SeedProperties seedProperties;
 
     @PostConstruct
     public void init() {
-        initMemberService.init();
-    }
-
-    @Component
-    static class InitMemberService {
-        @PersistenceContext
-        private EntityManager em;
-
-        @Transactional
-        public void init() {
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-            em.persist(teamA);
-            em.persist(teamB);
-
-            for (int i = 0; i < 100; i++) {
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                int age = i / 10 + 10;  // 나이 설정
-                em.persist(new Member("member"+i, age, selectedTeam));
-            }
-        }
+        memberDataGenerator.generate(seedProperties);
     }
 }
@@ -1,16 +1,43 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.dto.MemberSaveDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberAsyncRepository;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.AsyncQueryExecutor;
+import study.querydsl.repository.support.KeysetSlice;
+import study.querydsl.repository.support.StreamingProperties;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequiredArgsConstructor
@@ -18,10 +45,37 @@ public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+    private final StreamingProperties streamingProperties;
+    private final MemberAsyncRepository memberAsyncRepository;
+    private final AsyncQueryExecutor asyncQueryExecutor;
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-        return memberJpaRepository.searchByWhere(condition);
+        return memberJpaRepository.searchByTemplate(condition);
+    }
+
+    // v1 의 NDJSON 스트리밍 버전. 한 행씩 직렬화해서 쓰므로 결과 크기와 무관하게 힙 사용량이 일정하다.
+    @GetMapping("/v1/members/stream")
+    public ResponseEntity<StreamingResponseBody> streamMemberV1(MemberSearchCondition condition) {
+        ObjectWriter writer = objectMapper.writerFor(MemberTeamDto.class);
+        int flushRows = streamingProperties.getFlushRows();
+
+        StreamingResponseBody body = out -> {
+            int[] rows = {0};
+            memberJpaRepository.streamByWhere(condition, streamingProperties.getFetchSize(), dto -> {
+                writeLine(out, writer, dto);
+                // 클라이언트가 느리면 write 가 블로킹되어 DB 커서 읽기도 함께 멈춘다.(backpressure)
+                if (++rows[0] % flushRows == 0) {
+                    flush(out);
+                }
+            });
+            out.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
     }
 
     @GetMapping("/v2/members")
@@ -34,6 +88,57 @@ public class MemberController {
         return memberRepository.searchPagingComplexTwo(condition, pageable);
     }
 
+    // v1, v3 의 비동기 버전. 조회는 AsyncQueryExecutor 쓰레드에서 실행되고 요청 쓰레드는 바로 반환된다.
+    @GetMapping("/v1/members:async")
+    public DeferredResult<List<MemberTeamDto>> searchMemberV1Async(MemberSearchCondition condition) {
+        return deferred(memberAsyncRepository.searchAsync(condition));
+    }
+
+    @GetMapping("/v3/members:async")
+    public DeferredResult<Page<MemberTeamDto>> searchMemberV3Async(MemberSearchCondition condition, Pageable pageable) {
+        return deferred(memberAsyncRepository.searchPagingComplexTwoAsync(condition, pageable));
+    }
+
+    // 회원 대량 등록. 저장된 건수를 반환
+    // 요청 본문(JSON 배열)을 List 로 만들지 않고 원소 단위로 읽으면서 배치마다 저장한다.
+    @PostMapping("/members:batch")
+    public int saveMembers(InputStream body) throws IOException {
+        try (MappingIterator<MemberSaveDto> members = objectMapper.readerFor(MemberSaveDto.class).readValues(body)) {
+            return memberJpaRepository.ingest(members);
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid member list", e);
+        } catch (RuntimeException e) {
+            // MappingIterator 는 읽는 중의 JSON 오류를 RuntimeException 으로 감싼다.
+            if (e instanceof RuntimeJsonMappingException || e.getCause() instanceof JsonProcessingException) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid member list", e);
+            }
+            throw e;
+        }
+    }
+
+    // 다음 페이지는 응답의 nextCursor 를 cursor 파라미터로 넘겨서 조회
+    @GetMapping("/v4/members")
+    public KeysetSlice<MemberTeamDto> searchMemberV4(MemberSearchCondition condition, Pageable pageable,
+                                                     @RequestParam(required = false) String cursor) {
+        try {
+            return memberRepository.searchKeyset(condition, pageable, cursor);
+        } catch (IllegalArgumentException e) {
+            // 잘못되었거나 변조된 커서
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    // count 쿼리 없이 다음 페이지 존재 여부(hasNext)만 반환
+    @GetMapping("/v5/members")
+    public Slice<MemberTeamDto> searchMemberV5(MemberSearchCondition condition, Pageable pageable) {
+        try {
+            return memberRepository.searchSlice(condition, pageable);
+        } catch (IllegalArgumentException e) {
+            // 지원하지 않는 정렬 속성 (id, username, age, teamName 만 가능)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
     // searchMemberV3
     // count 쿼리
     /*
@@ -57,4 +162,43 @@ public class MemberController {
             team team1_
                 on member0_.team_id=team1_.team_id limit ? offset ?
      */
+
+    // 큐가 가득 찼거나 제한 시간을 넘기면 503
+    private <T> DeferredResult<T> deferred(CompletableFuture<T> future) {
+        DeferredResult<T> result = new DeferredResult<>(asyncQueryExecutor.getTimeoutMillis());
+        result.onTimeout(() -> {
+            future.cancel(true);
+            result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "search timed out"));
+        });
+        future.whenComplete((value, e) -> {
+            if (e == null) {
+                result.setResult(value);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TaskRejectedException || cause instanceof TimeoutException) {
+                result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "search is busy", cause));
+            } else {
+                result.setErrorResult(cause);
+            }
+        });
+        return result;
+    }
+
+    private static void writeLine(OutputStream out, ObjectWriter writer, MemberTeamDto dto) {
+        try {
+            out.write(writer.writeValueAsBytes(dto));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void flush(OutputStream out) {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,158 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 회원/팀 데이터 생성기. FIXED 는 고정 데이터, GENERATED 는 용량 테스트용 분포로 생성한다.
+ * 회원은 chunkSize 단위로 나누어 여러 쓰레드에서 각자의 트랜잭션으로 저장하고, chunk 마다 flush/clear 한다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberDataGenerator {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final PlatformTransactionManager transactionManager;
+
+    public void generate(SeedProperties properties) {
+        long start = System.currentTimeMillis();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        List<Long> teamIds = tx.execute(status -> createTeams(properties.getTeams()));
+        double[] teamCdf = teamCdf(properties.getTeams(), properties.getTeamSkew());
+
+        long chunks = (properties.getMembers() + properties.getChunkSize() - 1) / properties.getChunkSize();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, properties.getThreads()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (long chunk = 0; chunk < chunks; chunk++) {
+                long from = chunk * properties.getChunkSize();
+                long to = Math.min(from + properties.getChunkSize(), properties.getMembers());
+                if (properties.getMode() == SeedProperties.Mode.FIXED) {
+                    futures.add(executor.submit(() -> tx.executeWithoutResult(status ->
+                            createFixedMembers(from, to, teamIds))));
+                    continue;
+                }
+                // chunk 별 시드를 고정해서 실행할 때마다 같은 데이터가 만들어지게 한다.
+                Random random = new Random(properties.getRandomSeed() + chunk);
+                futures.add(executor.submit(() -> tx.executeWithoutResult(status ->
+                        createMembers(from, to, teamIds, teamCdf, random, properties))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("member seeding interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("member seeding failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log.info("seeded {} teams, {} members in {} ms",
+                properties.getTeams(), properties.getMembers(), System.currentTimeMillis() - start);
+    }
+
+    private List<Long> createTeams(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Team team = new Team(teamName(i));
+            em.persist(team);
+            ids.add(team.getId());
+        }
+        return ids;
+    }
+
+    private void createMembers(long from, long to, List<Long> teamIds, double[] teamCdf,
+                               Random random, SeedProperties properties) {
+        // 대량 저장한 회원으로 2차 캐시를 채우지 않는다.
+        em.setProperty("javax.persistence.cache.storeMode", CacheStoreMode.BYPASS);
+        for (long i = from; i < to; i++) {
+            Member member = new Member(username(i, random, properties), age(random, properties));
+            if (!teamIds.isEmpty()) {
+                // Member(username, age, team) 생성자는 team.members 컬렉션을 초기화하므로 프록시만 연결
+                member.setTeam(em.getReference(Team.class, teamIds.get(pickTeam(teamCdf, random))));
+            }
+            em.persist(member);
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private void createFixedMembers(long from, long to, List<Long> teamIds) {
+        em.setProperty("javax.persistence.cache.storeMode", CacheStoreMode.BYPASS);
+        for (long i = from; i < to; i++) {
+            Member member = new Member("member" + i, (int) (i / 10 + 10));
+            if (!teamIds.isEmpty()) {
+                member.setTeam(em.getReference(Team.class, teamIds.get((int) (i % teamIds.size()))));
+            }
+            em.persist(member);
+        }
+        em.flush();
+        em.clear();
+    }
+
+    // 순위 k 팀의 가중치 1 / k^skew 의 누적분포
+    private double[] teamCdf(int teams, double skew) {
+        double[] cdf = new double[teams];
+        double sum = 0;
+        for (int k = 0; k < teams; k++) {
+            sum += 1.0 / Math.pow(k + 1, skew);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < teams; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    private int pickTeam(double[] cdf, Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cdf.length - 1);
+    }
+
+    private int age(Random random, SeedProperties properties) {
+        long age = Math.round(properties.getAgeMean() + properties.getAgeStdDev() * random.nextGaussian());
+        return (int) Math.max(properties.getMinAge(), Math.min(properties.getMaxAge(), age));
+    }
+
+    private String username(long index, Random random, SeedProperties properties) {
+        long cardinality = properties.getUsernameCardinality();
+        if (cardinality <= 0) {
+            return "member" + index;
+        }
+        return "member" + (long) (random.nextDouble() * cardinality);
+    }
+
+    // teamA, teamB, ... teamZ, teamAA, teamAB ...
+    private String teamName(int index) {
+        StringBuilder name = new StringBuilder();
+        int i = index;
+        do {
+            name.insert(0, (char) ('A' + i % 26));
+            i = i / 26 - 1;
+        } while (i >= 0);
+        return "team" + name;
+    }
+}
@@ -0,0 +1,43 @@
+package study.querydsl.controller;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * local / perf 프로필의 초기 데이터 설정
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.seed")
+public class SeedProperties {
+
+    private Mode mode = Mode.FIXED;
+
+    private int teams = 2;
+    private long members = 100;
+
+    // 팀 크기 분포. 0 이면 균등, 1 이상이면 앞 순위 팀에 회원이 몰린다.(Zipf)
+    private double teamSkew = 0;
+
+    // 나이 분포 (정규분포, 범위 밖은 잘라냄)
+    private double ageMean = 35;
+    private double ageStdDev = 12;
+    private int minAge = 10;
+    private int maxAge = 80;
+
+    // 서로 다른 username 개수. 0 이면 모두 다른 이름(member0, member1, ...)
+    private long usernameCardinality = 0;
+
+    // 트랜잭션(flush/clear) 단위와 병렬 쓰레드 수
+    private int chunkSize = 1_000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private long randomSeed = 42;
+
+    public enum Mode {
+        // 회원 i 는 member{i}, 팀은 i % teams 번째, 나이는 i / 10 + 10 (기본값이면 teamA/teamB 에 회원 100명)
+        FIXED,
+        // 위의 팀 크기/나이/username 분포로 무작위 생성 (randomSeed 가 같으면 같은 데이터)
+        GENERATED
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.repository.support.TeamStatsAggregator;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamStatsAggregator teamStatsAggregator;
+
+    // 팀별 회원 수, 나이 평균/최소/최대. 메모리에서 증분 유지되는 값 (대시보드 polling 용)
+    @GetMapping("/teams/stats")
+    public List<TeamStatsDto> teamStats() {
+        return teamStatsAggregator.stats();
+    }
+}
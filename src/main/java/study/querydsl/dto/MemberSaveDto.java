@@ -0,0 +1,19 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class MemberSaveDto {
+
+    private String username;
+    private int age;
+    private Long teamId;
+
+    public MemberSaveDto(String username, int age, Long teamId) {
+        this.username = username;
+        this.age = age;
+        this.teamId = teamId;
+    }
+}
@@ -0,0 +1,34 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import static org.springframework.util.ObjectUtils.isEmpty;
+
+@Data
+public class MemberSearchCondition {
+    // 회원명, 팀명, 나이(ageGoe, ageLoe)
+
+    private String username;
+    // username 비교 방식 (기본: EXACT)
+    private UsernameMatch usernameMatch;
+    private String teamName;
+    private Integer ageGoe;
+    private Integer ageLoe;
+
+    // 캐시 키 용도: 조건으로 쓰이지 않는 빈 문자열을 null 로 맞춘 사본
+    public MemberSearchCondition normalize() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(isEmpty(username) ? null : username);
+        normalized.setUsernameMatch(isEmpty(username) || usernameMatch == UsernameMatch.EXACT ? null : usernameMatch);
+        normalized.setTeamName(isEmpty(teamName) ? null : teamName);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
+
+    public enum UsernameMatch {
+        EXACT,
+        PREFIX,   // 대소문자 구분 없이 username 으로 시작
+        CONTAINS  // 대소문자 구분 없이 username 을 포함
+    }
+}
@@ -0,0 +1,28 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 팀별 회원 수, 나이 평균/최소/최대. 회원이 없는 팀은 memberCount 0, 나이 값은 null
+@Data
+@NoArgsConstructor
+public class TeamStatsDto {
+
+    private Long teamId;
+    private String teamName;
+    private long memberCount;
+    private Double avgAge;
+    private Integer minAge;
+    private Integer maxAge;
+
+    @QueryProjection
+    public TeamStatsDto(Long teamId, String teamName, Long memberCount, Double avgAge, Integer minAge, Integer maxAge) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.memberCount = memberCount == null ? 0 : memberCount;
+        this.avgAge = avgAge;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+    }
+}
@@ -1,16 +1,30 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
+// 검색 조건 형태별 인덱스 (username / team.name + age / age). QueryPlanTest 가 테이블 스캔 여부를 확인한다.
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_team_age", columnList = "team_id, age"), // team_id 외래 키 인덱스를 겸한다.
+        @Index(name = "idx_member_age", columnList = "age")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Member.CACHE_REGION)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"}) // team은 포함하지 않는다.(연관관계)
 public class Member {
 
-    @Id @GeneratedValue
+    public static final String CACHE_REGION = "member";
+
+    // allocationSize 만큼 시퀀스를 한 번에 할당(pooled optimizer)해서 insert 마다 시퀀스 조회를 하지 않는다.
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -1,22 +1,33 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Team.CACHE_REGION)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
 
-    @Id @GeneratedValue
+    public static final String CACHE_REGION = "team";
+    public static final String MEMBERS_CACHE_REGION = "team.members";
+
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq_generator")
+    @SequenceGenerator(name = "team_seq_generator", sequenceName = "team_seq", allocationSize = 50)
     @Column(name = "team_id")
     private Long id;
     private String name;
 
+    // 컬렉션 캐시에는 회원 id 만 저장되므로 Member 도 캐시해야 초기화 시 회원을 하나씩 조회하지 않는다.
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Team.MEMBERS_CACHE_REGION)
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
@@ -0,0 +1,51 @@
+package study.querydsl.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.AsyncQueryExecutor;
+import study.querydsl.repository.support.KeysetSlice;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * MemberRepositoryCustom 조회 메서드의 비동기 버전. 각 호출은 AsyncQueryExecutor 쓰레드에서 자신의 트랜잭션으로 실행된다.
+ * 벌크 update/delete 는 제공하지 않는다. 제한 시간이 지나 실패로 응답해도 실행 중인 쓰기는 커밋될 수 있기 때문이다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MemberAsyncRepository {
+
+    private final MemberRepository memberRepository;
+    private final AsyncQueryExecutor asyncQueryExecutor;
+
+    public CompletableFuture<List<MemberTeamDto>> searchAsync(MemberSearchCondition condition) {
+        return asyncQueryExecutor.supply(() -> memberRepository.search(condition));
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPagingSimpleAsync(MemberSearchCondition condition, Pageable pageable) {
+        return asyncQueryExecutor.supply(() -> memberRepository.searchPagingSimple(condition, pageable));
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPagingComplexAsync(MemberSearchCondition condition, Pageable pageable) {
+        return asyncQueryExecutor.supply(() -> memberRepository.searchPagingComplex(condition, pageable));
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPagingComplexTwoAsync(MemberSearchCondition condition, Pageable pageable) {
+        return asyncQueryExecutor.supply(() -> memberRepository.searchPagingComplexTwo(condition, pageable));
+    }
+
+    public CompletableFuture<Slice<MemberTeamDto>> searchSliceAsync(MemberSearchCondition condition, Pageable pageable) {
+        return asyncQueryExecutor.supply(() -> memberRepository.searchSlice(condition, pageable));
+    }
+
+    public CompletableFuture<KeysetSlice<MemberTeamDto>> searchKeysetAsync(MemberSearchCondition condition, Pageable pageable,
+                                                                          String cursor) {
+        return asyncQueryExecutor.supply(() -> memberRepository.searchKeyset(condition, pageable, cursor));
+    }
+}
@@ -2,38 +2,140 @@ package study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSaveDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.MemberNearCache;
+import study.querydsl.repository.support.MemberUsernameIndex;
+import study.querydsl.repository.support.SearchResultCache;
 
+import javax.persistence.CacheStoreMode;
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
 @Repository
+@Transactional(readOnly = true)
 public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchQueryTemplates searchQueryTemplates;
+    private final int batchSize;
+    private final MemberUsernameIndex usernameIndex;
+    private final MemberNearCache nearCache;
+    private final SearchResultCache searchResultCache;
+    private final TransactionTemplate batchTransaction;
 
 //    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory) {
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, MemberSearchQueryTemplates searchQueryTemplates,
+                               MemberUsernameIndex usernameIndex, MemberNearCache nearCache,
+                               SearchResultCache searchResultCache, PlatformTransactionManager transactionManager,
+                               @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
 //        this.queryFactory = queryFactory;
+        this.searchQueryTemplates = searchQueryTemplates;
+        this.batchSize = batchSize;
+        this.usernameIndex = usernameIndex;
+        this.nearCache = nearCache;
+        this.searchResultCache = searchResultCache;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
+    @Transactional
     public void save(Member member) {
         em.persist(member);
     }
 
+    /**
+     * 대량 저장. JDBC 배치 크기마다 flush 해서 insert 를 배치로 보내고,
+     * 그 배치의 회원만 detach 해서 영속성 컨텍스트가 커지지 않게 한다.
+     * 넘겨받은 회원은 저장 후 준영속 상태가 된다. 호출 측 트랜잭션의 다른 엔티티는 영속 상태로 남는다.
+     * 커밋 후 이벤트(EntityChangeListener)를 위해 Hibernate 가 insert 액션을 커밋까지 보관하므로
+     * 한 트랜잭션의 메모리는 건수에 비례한다. 수십만 건 이상은 배치마다 커밋하는 ingest 를 사용한다.
+     */
+    @Transactional
+    public int saveAll(Collection<Member> members) {
+        List<Member> batch = new ArrayList<>(batchSize);
+        for (Member member : members) {
+            em.persist(member);
+            batch.add(member);
+            if (batch.size() == batchSize) {
+                flushAndDetach(batch);
+            }
+        }
+        flushAndDetach(batch);
+        return members.size();
+    }
+
+    /**
+     * 대량 등록. batch_size 건씩 읽어서 배치마다 별도 트랜잭션으로 커밋한다.
+     * 커밋 전까지 보관되는 insert 액션과 영속성 컨텍스트가 배치 크기로 제한되므로 입력을 Iterator 로 흘려 보내면 건수와 무관하게 메모리가 일정하다.
+     * 중간에 실패하면 이전 배치까지는 커밋된 상태로 남는다. (반환값 없이 예외)
+     * 팀은 조회하지 않고 프록시(getReference)로 연결만 한다.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int ingest(Iterator<MemberSaveDto> members) {
+        int saved = 0;
+        while (members.hasNext()) {
+            List<MemberSaveDto> chunk = new ArrayList<>(batchSize);
+            while (members.hasNext() && chunk.size() < batchSize) {
+                chunk.add(members.next());
+            }
+            batchTransaction.executeWithoutResult(status -> insertBatch(chunk));
+            saved += chunk.size();
+        }
+        return saved;
+    }
+
+    private void insertBatch(List<MemberSaveDto> chunk) {
+        // 대량 저장한 회원으로 2차 캐시를 채우지 않는다.
+        em.setProperty("javax.persistence.cache.storeMode", CacheStoreMode.BYPASS);
+        List<Member> batch = new ArrayList<>(chunk.size());
+        for (MemberSaveDto dto : chunk) {
+            Member member = new Member(dto.getUsername(), dto.getAge());
+            if (dto.getTeamId() != null) {
+                member.setTeam(em.getReference(Team.class, dto.getTeamId()));
+            }
+            em.persist(member);
+            batch.add(member);
+        }
+        // OSIV 로 요청의 EntityManager 를 계속 쓰는 경우에도 쌓이지 않도록 detach
+        flushAndDetach(batch);
+    }
+
+    // em.clear() 는 호출 측이 조회한 엔티티까지 준영속으로 만들므로 이번 배치만 detach
+    private void flushAndDetach(List<Member> batch) {
+        em.flush();
+        batch.forEach(em::detach);
+        batch.clear();
+    }
+
     public Optional<Member> findById(Long id) {
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
@@ -67,7 +169,7 @@ public class MemberJpaRepository {
 
         BooleanBuilder builder = new BooleanBuilder();
         if (hasText(cond.getUsername())) {
-            builder.and(member.username.eq(cond.getUsername()));
+            builder.and(usernameMatches(cond));
         }
         if (hasText(cond.getTeamName())) {
             builder.and(team.name.eq(cond.getTeamName()));
@@ -105,7 +207,7 @@ public class MemberJpaRepository {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(cond.getUsername()),
+                        usernameMatches(cond),
                         teamnameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe())
@@ -115,13 +217,63 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    /**
+     * searchByWhere 와 같은 결과를 조건 형태(shape)별로 미리 만들어 둔 JPQL 템플릿에 값만 바인딩해서 조회한다.
+     * near-cache 가 준비되어 있으면 메모리에서 평가하고, 같은 조건의 결과는 캐시한다. (Member, Team 변경 시 무효화)
+     * 캐시된 리스트는 공유되므로 수정할 수 없다.
+     */
+    public List<MemberTeamDto> searchByTemplate(MemberSearchCondition cond) {
+        return searchResultCache.get(SearchResultCache.key("searchByTemplate", cond), () -> {
+            List<MemberTeamDto> cached = nearCache.search(cond);
+            return Collections.unmodifiableList(cached != null ? cached : searchQueryTemplates.search(cond));
+        }, Member.class, Team.class);
+    }
+
+    /**
+     * searchByWhere 의 스트리밍 버전. 결과를 리스트로 모으지 않고 한 행씩 consumer 에 넘긴다.
+     * DTO 프로젝션이므로 영속성 컨텍스트에 엔티티가 쌓이지 않는다.
+     * H2 는 LAZY_QUERY_EXECUTION=1 (datasource url) 이 없으면 fetch size 와 관계없이 결과 전체를 서버 메모리에 만든다.
+     */
+    @Transactional(readOnly = true)
+    public void streamByWhere(MemberSearchCondition cond, int fetchSize, Consumer<MemberTeamDto> consumer) {
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member);
+        // team.name 조건이 있으면 inner join (team.name 인덱스부터 읽는다)
+        if (hasText(cond.getTeamName())) {
+            query.join(member.team, team);
+        } else {
+            query.leftJoin(member.team, team);
+        }
+
+        try (Stream<MemberTeamDto> stream = query
+                .where(
+                        usernameMatches(cond),
+                        teamnameEq(cond.getTeamName()),
+                        ageGoe(cond.getAgeGoe()),
+                        ageLoe(cond.getAgeLoe())
+                )
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .stream()) {
+            stream.forEach(consumer);
+        }
+    }
+
     // 조건 메서드 조립 가능(null 체크 중요)
     private BooleanExpression ageBetween(int ageLoe, int ageGoe) {
         return ageLoe(ageLoe).and(ageGoe(ageGoe));
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    // EXACT 는 eq, PREFIX/CONTAINS 는 username 인덱스 후보 id + LIKE 확인
+    private BooleanExpression usernameMatches(MemberSearchCondition cond) {
+        return usernameIndex.usernameMatches(cond.getUsername(), cond.getUsernameMatch());
     }
 
     private BooleanExpression teamnameEq(String teamName) {
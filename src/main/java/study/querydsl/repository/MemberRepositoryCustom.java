@@ -2,8 +2,10 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.KeysetSlice;
 
 import java.util.List;
 
@@ -12,4 +14,8 @@ public interface MemberRepositoryCustom {
     Page<MemberTeamDto> searchPagingSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPagingComplex(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPagingComplexTwo(MemberSearchCondition condition, Pageable pageable);
+    Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable);
+    KeysetSlice<MemberTeamDto> searchKeyset(MemberSearchCondition condition, Pageable pageable, String cursor);
+    long bulkAgePlus(MemberSearchCondition condition, int amount);
+    long bulkDelete(MemberSearchCondition condition);
 }
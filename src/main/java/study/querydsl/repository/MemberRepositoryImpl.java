@@ -1,31 +1,80 @@
 package study.querydsl.repository;
 
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.jpa.JPAExpressions;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.ApproximatePage;
+import study.querydsl.repository.support.BulkOperations;
+import study.querydsl.repository.support.CountCache;
+import study.querydsl.repository.support.CountQueryStrategy;
+import study.querydsl.repository.support.DeferredJoin;
+import study.querydsl.repository.support.KeysetCursor;
+import study.querydsl.repository.support.KeysetSlice;
+import study.querydsl.repository.support.MemberUsernameIndex;
+import study.querydsl.repository.support.PagingProperties;
+import study.querydsl.repository.support.RepositoryMetrics;
+import study.querydsl.repository.support.SearchResultCache;
+import study.querydsl.repository.support.TeamStatsAggregator;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+// 조회는 읽기 전용 트랜잭션 (읽기/쓰기 분리 시 replica 로 라우팅)
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
     private final JPAQueryFactory queryFactory;
+    private final PagingProperties pagingProperties;
+    private final CountCache countCache;
+    private final BulkOperations bulkOperations;
+    private final RepositoryMetrics repositoryMetrics;
+    private final MemberUsernameIndex usernameIndex;
+    private final TeamStatsAggregator teamStatsAggregator;
+    private final CountQueryStrategy countQueryStrategy;
+    private final SearchResultCache searchResultCache;
+    private final EntityManager em;
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, PagingProperties pagingProperties,
+                                CountCache countCache, BulkOperations bulkOperations,
+                                RepositoryMetrics repositoryMetrics, MemberUsernameIndex usernameIndex,
+                                TeamStatsAggregator teamStatsAggregator, CountQueryStrategy countQueryStrategy,
+                                SearchResultCache searchResultCache) {
+        this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.pagingProperties = pagingProperties;
+        this.countCache = countCache;
+        this.bulkOperations = bulkOperations;
+        this.repositoryMetrics = repositoryMetrics;
+        this.usernameIndex = usernameIndex;
+        this.teamStatsAggregator = teamStatsAggregator;
+        this.countQueryStrategy = countQueryStrategy;
+        this.searchResultCache = searchResultCache;
     }
 
     @Override
@@ -41,7 +90,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
-                        usernameEq(cond.getUsername()),
+                        usernameMatches(cond),
                         teamnameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe())
@@ -50,8 +99,20 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .fetch();
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    // EXACT 는 eq, PREFIX/CONTAINS 는 username 인덱스 후보 id + LIKE 확인
+    private BooleanExpression usernameMatches(MemberSearchCondition cond) {
+        return usernameIndex.usernameMatches(cond.getUsername(), cond.getUsernameMatch());
+    }
+
+    // team.name 조건이 있으면 inner join 으로 바꿔 team(name 인덱스)부터 읽게 한다.
+    // left join 은 H2 가 조인 순서를 바꾸지 못해 member 를 전체 스캔한다. (team.name = ? 조건이 있으면 결과는 같다)
+    private <T> JPAQuery<T> joinTeam(JPAQuery<T> query, String teamName) {
+        return hasText(teamName) ? query.join(member.team, team) : query.leftJoin(member.team, team);
+    }
+
+    // team 컬럼을 조회하지 않는 쿼리(count 등)는 team.name 조건이 있을 때만 조인
+    private <T> JPAQuery<T> joinTeamIfFiltered(JPAQuery<T> query, String teamName) {
+        return hasText(teamName) ? query.join(member.team, team) : query;
     }
 
     private BooleanExpression teamnameEq(String teamName) {
@@ -66,9 +127,15 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
         return ageLoe != null ? member.age.loe(ageLoe) : null;
     }
 
+    // 같은 조건/페이지의 결과는 캐시 (Member, Team 변경 시 무효화)
     @Override
     public Page<MemberTeamDto> searchPagingSimple(MemberSearchCondition cond, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
+        return searchResultCache.get(SearchResultCache.key("searchPagingSimple", cond, pageable),
+                () -> fetchPagingSimple(cond, pageable), Member.class, Team.class);
+    }
+
+    private Page<MemberTeamDto> fetchPagingSimple(MemberSearchCondition cond, Pageable pageable) {
+        QueryResults<MemberTeamDto> results = joinTeam(queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -76,10 +143,9 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         team.id.as("teamId"),
                         team.name.as("teamName")
                 ))
-                .from(member)
-                .leftJoin(member.team, team)
+                .from(member), cond.getTeamName())
                 .where(
-                        usernameEq(cond.getUsername()),
+                        usernameMatches(cond),
                         teamnameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe())
@@ -97,7 +163,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
     @Override
     public Page<MemberTeamDto> searchPagingComplex(MemberSearchCondition cond, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
+        JPAQuery<MemberTeamDto> contentQuery = joinTeam(queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -105,38 +171,81 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         team.id.as("teamId"),
                         team.name.as("teamName")
                 ))
-                .from(member)
-                .leftJoin(member.team, team)
+                .from(member), cond.getTeamName())
                 .where(
-                        usernameEq(cond.getUsername()),
+                        usernameMatches(cond),
                         teamnameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe())
 
-                )
+                );
+        List<MemberTeamDto> content = repositoryMetrics.content(() -> fetchPage(contentQuery, pageable));
+
+        // count 쿼리는 content 쿼리에서 유도 (정렬/projection, 조건에 쓰이지 않는 team left join 제외)
+        JPAQuery<?> countQuery = countQueryStrategy.countQuery(contentQuery, em);
+        long total = repositoryMetrics.count(countQuery::fetchCount).getAsLong();
+
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    // offset 이 깊으면 건너뛸 행들은 id 인덱스만 읽고, 해당 페이지 행만 team 조인/전체 컬럼을 조회한다.
+    private List<MemberTeamDto> fetchPage(JPAQuery<MemberTeamDto> contentQuery, Pageable pageable) {
+        long threshold = pagingProperties.getDeferredJoinOffsetThreshold();
+        if (threshold > 0 && pageable.getOffset() >= threshold) {
+            return DeferredJoin.fetch(contentQuery, em, member.id,
+                    query -> query.offset(pageable.getOffset()).limit(pageable.getPageSize()));
+        }
+        return contentQuery
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetch();
+    }
 
-        // count 쿼리 조회 시 left 조인 불필요시 사용
-        long total = queryFactory
-                .select(member)
-                .from(member)
-//                .leftJoin(member.team, team)
+    @Override
+    public Page<MemberTeamDto> searchPagingComplexTwo(MemberSearchCondition cond, Pageable pageable) {
+        return searchResultCache.get(SearchResultCache.key("searchPagingComplexTwo", cond, pageable),
+                () -> fetchPagingComplexTwo(cond, pageable), Member.class, Team.class);
+    }
+
+    private Page<MemberTeamDto> fetchPagingComplexTwo(MemberSearchCondition cond, Pageable pageable) {
+        JPAQuery<MemberTeamDto> contentQuery = joinTeam(queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member), cond.getTeamName())
                 .where(
-                        usernameEq(cond.getUsername()),
+                        usernameMatches(cond),
                         teamnameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe())
+
                 )
-                .fetchCount();
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize());
+        List<MemberTeamDto> content = repositoryMetrics.content(contentQuery::fetch);
 
-        return new PageImpl<>(content, pageable, total);
+        // count 쿼리는 content 쿼리에서 유도 (정렬/projection, 조건에 쓰이지 않는 team left join 제외)
+        JPAQuery<?> countQuery = countQueryStrategy.countQuery(contentQuery, em);
+
+//        return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.fetchCount());
+//        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        // 같은 조건의 count 는 캐시 (Member, Team 변경 시 무효화)
+        // 팀/나이 히스토그램으로 추정한 전체 수가 기준 이상이면 count 쿼리 대신 추정값 사용 (approximate: true)
+        return ApproximatePage.getPage(content, pageable,
+                countCache.supplier(CountCache.key("searchPagingComplexTwo", cond.normalize()),
+                        repositoryMetrics.count(countQuery::fetchCount)),
+                teamStatsAggregator.estimateCount(cond), pagingProperties.getApproximateCountThreshold());
     }
 
+    // count 쿼리 없이 pageSize + 1 건을 조회해서 다음 페이지 존재 여부만 판단 (무한 스크롤, "더보기")
     @Override
-    public Page<MemberTeamDto> searchPagingComplexTwo(MemberSearchCondition cond, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
+    public Slice<MemberTeamDto> searchSlice(MemberSearchCondition cond, Pageable pageable) {
+        int size = pageable.getPageSize();
+        JPAQuery<MemberTeamDto> contentQuery = joinTeam(queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -144,33 +253,225 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         team.id.as("teamId"),
                         team.name.as("teamName")
                 ))
-                .from(member)
-                .leftJoin(member.team, team)
+                .from(member), cond.getTeamName())
                 .where(
-                        usernameEq(cond.getUsername()),
+                        usernameMatches(cond),
                         teamnameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe())
-
                 )
+                .orderBy(sliceOrderBy(pageable.getSort()))
                 .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
+                .limit(size + 1);
+        List<MemberTeamDto> rows = repositoryMetrics.content(contentQuery::fetch);
+
+        boolean hasNext = rows.size() > size;
+        List<MemberTeamDto> content = hasNext ? rows.subList(0, size) : rows;
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public KeysetSlice<MemberTeamDto> searchKeyset(MemberSearchCondition cond, Pageable pageable, String cursor) {
+        int size = pageable.getPageSize();
+        String property;
+        Sort.Direction direction;
+        KeysetCursor seek = null;
+        long offset = 0;
+
+        if (hasText(cursor)) {
+            seek = KeysetCursor.decode(cursor);
+            property = seek.getProperty();
+            direction = seek.getDirection();
+        } else {
+            Sort.Order order = keysetOrder(pageable.getSort());
+            property = order.getProperty();
+            direction = order.getDirection();
+            if (pageable.getOffset() > pagingProperties.getKeysetOffsetThreshold()) {
+                // 깊은 offset 은 (정렬 값, id)만 읽는 좁은 쿼리로 시작 위치를 찾고 seek 으로 전환
+                seek = findKeysetBoundary(cond, property, direction, pageable.getOffset());
+                if (seek == null) {
+                    return new KeysetSlice<>(Collections.emptyList(), size, false, null);
+                }
+            } else {
+                offset = pageable.getOffset();
+            }
+        }
+
+        List<MemberTeamDto> rows = joinTeam(queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member), cond.getTeamName())
+                .where(
+                        usernameMatches(cond),
+                        teamnameEq(cond.getTeamName()),
+                        ageGoe(cond.getAgeGoe()),
+                        ageLoe(cond.getAgeLoe()),
+                        seek == null ? null : keysetAfter(seek)
+                )
+                .orderBy(keysetOrderBy(property, direction))
+                .offset(offset)
+                .limit(size + 1) // 다음 페이지 존재 여부 확인용으로 1건 더 조회
                 .fetch();
 
-        // count 쿼리 조회 시 left 조인 불필요시 사용
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
-                .from(member)
-//                .leftJoin(member.team, team)
+        boolean hasNext = rows.size() > size;
+        List<MemberTeamDto> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? keysetCursorOf(content.get(size - 1), property, direction).encode() : null;
+
+        return new KeysetSlice<>(content, size, hasNext, nextCursor);
+    }
+
+    private KeysetCursor findKeysetBoundary(MemberSearchCondition cond, String property, Sort.Direction direction, long offset) {
+        Tuple boundary = joinTeamIfFiltered(queryFactory
+                .select(member.id, member.username, member.age)
+                .from(member), cond.getTeamName())
                 .where(
-                        usernameEq(cond.getUsername()),
+                        usernameMatches(cond),
                         teamnameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe())
-                );
+                )
+                .orderBy(keysetOrderBy(property, direction))
+                .offset(offset - 1)
+                .limit(1)
+                .fetchFirst();
 
-//        return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.fetchCount());
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        if (boundary == null) {
+            return null;
+        }
+        String value = "username".equals(property) ? boundary.get(member.username)
+                : "age".equals(property) ? String.valueOf(boundary.get(member.age)) : null;
+        return new KeysetCursor(property, direction, boundary.get(member.id), value);
+    }
+
+    // keyset 정렬은 username, age, id 중 첫 번째 정렬 조건 + id(tie-breaker) 만 지원
+    private Sort.Order keysetOrder(Sort sort) {
+        for (Sort.Order order : sort) {
+            if ("id".equals(order.getProperty()) || "username".equals(order.getProperty()) || "age".equals(order.getProperty())) {
+                return order;
+            }
+        }
+        return Sort.Order.asc("id");
     }
 
+    // 요청한 정렬 뒤에 id 를 붙여서 정렬 값이 같은 행도 페이지 사이에 순서가 바뀌지 않게 한다.
+    // teamName 은 content 쿼리의 team 조인으로 정렬한다. (팀이 없는 회원은 null)
+    private OrderSpecifier<?>[] sliceOrderBy(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> path = "teamName".equals(order.getProperty()) ? team.name : sortPath(order.getProperty());
+            orders.add(order.isAscending() ? path.asc() : path.desc());
+            if (path == member.id) {
+                return orders.toArray(new OrderSpecifier<?>[0]);
+            }
+        }
+        orders.add(member.id.asc());
+        return orders.toArray(new OrderSpecifier<?>[0]);
+    }
+
+    private ComparableExpressionBase<?> sortPath(String property) {
+        switch (property) {
+            case "id":
+                return member.id;
+            case "username":
+                return member.username;
+            case "age":
+                return member.age;
+            default:
+                throw new IllegalArgumentException("Unsupported sort property: " + property);
+        }
+    }
+
+    // 정렬 값이 null 인 행은 방향과 관계없이 마지막에 둔다. (DB 마다 기본 null 순서가 다르다.)
+    private OrderSpecifier<?>[] keysetOrderBy(String property, Sort.Direction direction) {
+        ComparableExpressionBase<?> path = sortPath(property);
+        if (path == member.id) {
+            return new OrderSpecifier<?>[]{direction.isAscending() ? member.id.asc() : member.id.desc()};
+        }
+        return direction.isAscending()
+                ? new OrderSpecifier<?>[]{path.asc().nullsLast(), member.id.asc()}
+                : new OrderSpecifier<?>[]{path.desc().nullsLast(), member.id.desc()};
+    }
+
+    // (정렬 값, id) 가 커서보다 뒤에 있는 행. null 은 마지막이므로 값이 있는 커서 뒤에는 null 인 행이 모두 오고,
+    // null 커서 뒤에는 null 인 행 중 id 가 뒤인 행만 온다.
+    // 정렬 값 범위 조건(>=, <=)을 앞에 두어 OR 조건이어도 정렬 컬럼 인덱스를 사용한다.
+    private BooleanExpression keysetAfter(KeysetCursor cursor) {
+        boolean asc = cursor.isAscending();
+        BooleanExpression idAfter = asc ? member.id.gt(cursor.getId()) : member.id.lt(cursor.getId());
+
+        switch (cursor.getProperty()) {
+            case "id":
+                return idAfter;
+            case "username": {
+                String value = cursor.getValue();
+                if (value == null) {
+                    return member.username.isNull().and(idAfter);
+                }
+                BooleanExpression from = asc ? member.username.goe(value) : member.username.loe(value);
+                BooleanExpression after = asc ? member.username.gt(value) : member.username.lt(value);
+                return from.and(after.or(idAfter)).or(member.username.isNull());
+            }
+            case "age": {
+                // age 는 null 이 아니다. (int)
+                Integer value = Integer.valueOf(cursor.getValue());
+                BooleanExpression from = asc ? member.age.goe(value) : member.age.loe(value);
+                BooleanExpression after = asc ? member.age.gt(value) : member.age.lt(value);
+                return from.and(after.or(idAfter));
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported keyset property: " + cursor.getProperty());
+        }
+    }
+
+    private KeysetCursor keysetCursorOf(MemberTeamDto last, String property, Sort.Direction direction) {
+        String value = "username".equals(property) ? last.getUsername()
+                : "age".equals(property) ? String.valueOf(last.getAge()) : null;
+        return new KeysetCursor(property, direction, last.getMemberId(), value);
+    }
+
+    // 대상 회원만 영속성 컨텍스트와 동기화하므로 호출 측에서 em.clear() 할 필요가 없다.
+    @Override
+    @Transactional
+    public long bulkAgePlus(MemberSearchCondition cond, int amount) {
+        return bulkOperations.update(member, member.id,
+                ExpressionUtils.allOf(
+                        usernameMatches(cond),
+                        bulkTeamnameEq(cond.getTeamName()),
+                        ageGoe(cond.getAgeGoe()),
+                        ageLoe(cond.getAgeLoe())
+                ),
+                update -> update.set(member.age, member.age.add(amount)));
+    }
+
+    @Override
+    @Transactional
+    public long bulkDelete(MemberSearchCondition cond) {
+        return bulkOperations.delete(member, member.id,
+                ExpressionUtils.allOf(
+                        usernameMatches(cond),
+                        bulkTeamnameEq(cond.getTeamName()),
+                        ageGoe(cond.getAgeGoe()),
+                        ageLoe(cond.getAgeLoe())
+                ),
+                deleted -> {
+                    // 이미 로딩된 team.members 컬렉션에서도 제거
+                    Team memberTeam = deleted.getTeam();
+                    if (memberTeam != null && Hibernate.isInitialized(memberTeam)
+                            && Hibernate.isInitialized(memberTeam.getMembers())) {
+                        memberTeam.getMembers().remove(deleted);
+                    }
+                });
+    }
+
+    // 벌크 update/delete 에서는 조인을 사용할 수 없으므로 서브쿼리로 처리
+    private BooleanExpression bulkTeamnameEq(String teamName) {
+        return hasText(teamName)
+                ? member.team.in(JPAExpressions.selectFrom(team).where(team.name.eq(teamName)))
+                : null;
+    }
 }
@@ -0,0 +1,218 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchCondition.UsernameMatch;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.MemberUsernameIndex;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색 쿼리의 JPQL 템플릿 캐시.
+ * 검색 조건 4개(username, teamName, ageGoe, ageLoe)의 사용 여부로 만들어지는 16가지 형태(shape)마다
+ * Param 자리표시자를 사용한 JPQL 을 한 번만 만들어 두고, 요청마다 값만 바인딩한다.
+ */
+@Component
+public class MemberSearchQueryTemplates {
+
+    public static final int USERNAME = 1;
+    public static final int TEAM_NAME = 1 << 1;
+    public static final int AGE_GOE = 1 << 2;
+    public static final int AGE_LOE = 1 << 3;
+    private static final int SHAPES = 1 << 4;
+
+    private static final Param<String> USERNAME_PARAM = new Param<>(String.class, "username");
+    private static final Param<String> TEAM_NAME_PARAM = new Param<>(String.class, "teamName");
+    private static final Param<Integer> AGE_GOE_PARAM = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE_PARAM = new Param<>(Integer.class, "ageLoe");
+
+    private static final QMemberTeamDto PROJECTION = new QMemberTeamDto(
+            member.id.as("memberId"),
+            member.username,
+            member.age,
+            team.id.as("teamId"),
+            team.name.as("teamName")
+    );
+
+    private final EntityManager em;
+    private final MemberUsernameIndex usernameIndex;
+    private final AtomicReferenceArray<Template> templates = new AtomicReferenceArray<>(SHAPES);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public MemberSearchQueryTemplates(EntityManager em, MemberUsernameIndex usernameIndex) {
+        this.em = em;
+        this.usernameIndex = usernameIndex;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition cond) {
+        if (isPartialUsername(cond)) {
+            return searchPartialUsername(cond);
+        }
+        int shape = shapeOf(cond);
+        Template template = templates.get(shape);
+        if (template == null) {
+            misses.incrementAndGet();
+            // 동시에 컴파일되더라도 결과가 같으므로 먼저 등록된 것을 사용
+            templates.compareAndSet(shape, null, compile(shape));
+            template = templates.get(shape);
+        } else {
+            hits.incrementAndGet();
+        }
+
+        Map<ParamExpression<?>, Object> params = new HashMap<>();
+        if ((shape & USERNAME) != 0) {
+            params.put(USERNAME_PARAM, cond.getUsername());
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            params.put(TEAM_NAME_PARAM, cond.getTeamName());
+        }
+        if ((shape & AGE_GOE) != 0) {
+            params.put(AGE_GOE_PARAM, cond.getAgeGoe());
+        }
+        if ((shape & AGE_LOE) != 0) {
+            params.put(AGE_LOE_PARAM, cond.getAgeLoe());
+        }
+
+        Query query = em.createQuery(template.jpql);
+        JPAUtil.setConstants(query, template.constants, params);
+
+        List<?> rows = query.getResultList();
+        List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            result.add(PROJECTION.newInstance((Object[]) row));
+        }
+        return result;
+    }
+
+    // PREFIX/CONTAINS 는 username 인덱스 후보 id 목록이 매번 달라지므로 템플릿을 사용하지 않는다.
+    private List<MemberTeamDto> searchPartialUsername(MemberSearchCondition cond) {
+        JPAQuery<MemberTeamDto> query = new JPAQuery<Void>(em)
+                .select(PROJECTION)
+                .from(member);
+        if (hasText(cond.getTeamName())) {
+            query.join(member.team, team);
+        } else {
+            query.leftJoin(member.team, team);
+        }
+        return query
+                .where(
+                        usernameIndex.usernameMatches(cond.getUsername(), cond.getUsernameMatch()),
+                        hasText(cond.getTeamName()) ? team.name.eq(cond.getTeamName()) : null,
+                        cond.getAgeGoe() != null ? member.age.goe(cond.getAgeGoe()) : null,
+                        cond.getAgeLoe() != null ? member.age.loe(cond.getAgeLoe()) : null
+                )
+                .fetch();
+    }
+
+    private static boolean isPartialUsername(MemberSearchCondition cond) {
+        return hasText(cond.getUsername())
+                && cond.getUsernameMatch() != null && cond.getUsernameMatch() != UsernameMatch.EXACT;
+    }
+
+    private Template compile(int shape) {
+        JPAQuery<MemberTeamDto> query = new JPAQuery<Void>()
+                .select(PROJECTION)
+                .from(member);
+        // team.name 조건이 있으면 inner join (left join 은 team.name 인덱스로 시작하지 못하고 member 를 전체 스캔)
+        if ((shape & TEAM_NAME) != 0) {
+            query.join(member.team, team);
+        } else {
+            query.leftJoin(member.team, team);
+        }
+        query.where(
+                (shape & USERNAME) != 0 ? member.username.eq(USERNAME_PARAM) : null,
+                (shape & TEAM_NAME) != 0 ? team.name.eq(TEAM_NAME_PARAM) : null,
+                (shape & AGE_GOE) != 0 ? member.age.goe(AGE_GOE_PARAM) : null,
+                (shape & AGE_LOE) != 0 ? member.age.loe(AGE_LOE_PARAM) : null
+        );
+
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(em), em);
+        serializer.serialize(query.getMetadata(), false, null);
+        return new Template(serializer.toString(), new HashMap<>(serializer.getConstantToLabel()));
+    }
+
+    public static int shapeOf(MemberSearchCondition cond) {
+        int shape = 0;
+        if (hasText(cond.getUsername())) {
+            shape |= USERNAME;
+        }
+        if (hasText(cond.getTeamName())) {
+            shape |= TEAM_NAME;
+        }
+        if (cond.getAgeGoe() != null) {
+            shape |= AGE_GOE;
+        }
+        if (cond.getAgeLoe() != null) {
+            shape |= AGE_LOE;
+        }
+        return shape;
+    }
+
+    // describe(shape) 에 username 비교 방식을 반영. ex) "usernameContains+ageGoe"
+    public static String describe(MemberSearchCondition cond) {
+        String shape = describe(shapeOf(cond));
+        if (isPartialUsername(cond)) {
+            String match = cond.getUsernameMatch() == UsernameMatch.PREFIX ? "usernamePrefix" : "usernameContains";
+            return shape.replaceFirst("^username", match);
+        }
+        return shape;
+    }
+
+    // ex) "username+ageGoe", 조건이 없으면 "none"
+    public static String describe(int shape) {
+        StringJoiner joiner = new StringJoiner("+");
+        if ((shape & USERNAME) != 0) {
+            joiner.add("username");
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            joiner.add("teamName");
+        }
+        if ((shape & AGE_GOE) != 0) {
+            joiner.add("ageGoe");
+        }
+        if ((shape & AGE_LOE) != 0) {
+            joiner.add("ageLoe");
+        }
+        return shape == 0 ? "none" : joiner.toString();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Template {
+        private final String jpql;
+        private final Map<Object, String> constants;
+
+        private Template(String jpql, Map<Object, String> constants) {
+            this.jpql = jpql;
+            this.constants = constants;
+        }
+    }
+}
@@ -4,10 +4,16 @@ import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.CountCache;
+import study.querydsl.repository.support.PagingMode;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
+import study.querydsl.repository.support.TeamStatsAggregator;
 
 import java.util.List;
 
@@ -15,10 +21,15 @@ import static org.springframework.util.ObjectUtils.isEmpty;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+@Repository
+@Transactional(readOnly = true)
 public class MemberTestRepository extends Querydsl4RepositorySupport {
 
-    public MemberTestRepository() {
+    private final TeamStatsAggregator teamStatsAggregator;
+
+    public MemberTestRepository(TeamStatsAggregator teamStatsAggregator) {
         super(Member.class);
+        this.teamStatsAggregator = teamStatsAggregator;
     }
 
     public List<Member> basicSelect() {
@@ -60,6 +71,22 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         );
     }
 
+    // 건너뛸 행은 member.id 만 읽고, 해당 페이지 행만 team 을 fetch join 해서 조회
+    public Page<Member> applyPaginationDeferredJoin(MemberSearchCondition condition, Pageable pageable) {
+        return applyPagination(pageable,
+                query ->
+                    query.selectFrom(member)
+                            .leftJoin(member.team, team).fetchJoin()
+                            .where(
+                                    usernameEq(condition.getUsername()),
+                                    teamNameEq(condition.getTeamName()),
+                                    ageGoe(condition.getAgeGoe()),
+                                    ageLoe(condition.getAgeLoe())
+                            )
+                , PagingMode.DEFERRED_JOIN
+        );
+    }
+
     public Page<Member> applyPaginationComplex(MemberSearchCondition condition, Pageable pageable) {
         return applyPagination(pageable,
                 contentQuery ->
@@ -79,10 +106,26 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                                         ageGoe(condition.getAgeGoe()),
                                         ageLoe(condition.getAgeLoe())
                                 )
+                , CountCache.key("applyPaginationComplex", condition.normalize())
+                , () -> teamStatsAggregator.estimateCount(condition)
         );
     }
 
 
+    public Slice<Member> applySlicing(MemberSearchCondition condition, Pageable pageable) {
+        return applySlicing(pageable,
+                query ->
+                    query.selectFrom(member)
+                            .leftJoin(member.team, team)
+                            .where(
+                                    usernameEq(condition.getUsername()),
+                                    teamNameEq(condition.getTeamName()),
+                                    ageGoe(condition.getAgeGoe()),
+                                    ageLoe(condition.getAgeLoe())
+                            )
+        );
+    }
+
     private BooleanExpression usernameEq(String username) {
         return isEmpty(username) ? null : member.username.eq(username);
     }
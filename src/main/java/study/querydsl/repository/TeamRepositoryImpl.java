@@ -0,0 +1,95 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.support.Querydsl;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.NPlusOneDetector;
+import study.querydsl.repository.support.RepositoryMetrics;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@Transactional(readOnly = true)
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+
+    // IN 절 파라미터 개수 제한
+    private static final int IN_CHUNK_SIZE = 1_000;
+
+    private final JPAQueryFactory queryFactory;
+    private final Querydsl querydsl;
+    private final RepositoryMetrics repositoryMetrics;
+
+    public TeamRepositoryImpl(EntityManager em, RepositoryMetrics repositoryMetrics) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.querydsl = new Querydsl(em, new PathBuilder<>(Team.class, team.getMetadata()));
+        this.repositoryMetrics = repositoryMetrics;
+    }
+
+    /**
+     * 컬렉션 fetch join 에 offset/limit 을 걸면 Hibernate 가 전체 조인 결과를 메모리에서 페이징(HHH000104)하므로
+     * 1) 팀 id 만 SQL 로 페이징하고 2) 그 id 들에 대해서만 members 를 fetch join 한다.
+     */
+    @Override
+    public Page<Team> findPageWithMembers(Pageable pageable) {
+        List<Team> content = repositoryMetrics.content(() -> fetchWithMembers(pageTeamIds(pageable)));
+
+        JPAQuery<Team> countQuery = queryFactory
+                .selectFrom(team);
+        return PageableExecutionUtils.getPage(content, pageable, repositoryMetrics.count(countQuery::fetchCount));
+    }
+
+    private List<Long> pageTeamIds(Pageable pageable) {
+        JPAQuery<Long> query = queryFactory
+                .select(team.id)
+                .from(team);
+        querydsl.applyPagination(pageable, query);
+        // 정렬 값이 같은 팀이 페이지 경계에서 중복/누락되지 않도록 id 로 한 번 더 정렬
+        return query.orderBy(team.id.asc()).fetch();
+    }
+
+    // ids 순서(페이지 정렬 순서)대로 반환
+    private List<Team> fetchWithMembers(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<Long, Team> teams = new HashMap<>();
+        try (NPlusOneDetector.Suppression suppression = NPlusOneDetector.suppress()) {
+            for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+                List<Team> fetched = queryFactory
+                        .selectFrom(team)
+                        .leftJoin(team.members, member).fetchJoin()
+                        .where(team.id.in(chunk))
+                        .fetch();
+                // 조인으로 중복된 팀은 map 으로 제거
+                for (Team fetchedTeam : fetched) {
+                    teams.put(fetchedTeam.getId(), fetchedTeam);
+                }
+            }
+        }
+
+        List<Team> content = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Team found = teams.get(id);
+            // 두 쿼리 사이에 삭제된 팀은 제외
+            if (found != null) {
+                content.add(found);
+            }
+        }
+        return content;
+    }
+}
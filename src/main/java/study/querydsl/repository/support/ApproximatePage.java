@@ -0,0 +1,47 @@
+package study.querydsl.repository.support;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 전체 수(totalElements)가 추정값일 수 있는 페이지. 응답 JSON 에 "approximate": true 로 표시된다.
+ */
+public class ApproximatePage<T> extends PageImpl<T> {
+
+    private final boolean approximate;
+
+    public ApproximatePage(List<T> content, Pageable pageable, long total, boolean approximate) {
+        super(content, pageable, total);
+        this.approximate = approximate;
+    }
+
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /**
+     * 추정값이 threshold 이상이면 count 쿼리 대신 추정값을 전체 수로 사용한다.
+     * 그보다 작거나 추정할 수 없으면 PageableExecutionUtils.getPage 와 같다. (threshold 가 0 이하면 항상 정확한 count)
+     */
+    public static <T> Page<T> getPage(List<T> content, Pageable pageable, LongSupplier exactTotal,
+                                      OptionalLong estimate, long threshold) {
+        if (threshold <= 0 || !estimate.isPresent() || estimate.getAsLong() < threshold || isTotalKnown(content, pageable)) {
+            return PageableExecutionUtils.getPage(content, pageable, exactTotal);
+        }
+        // 추정값이 이미 조회한 범위보다 작게 나오지 않도록 보정
+        long total = Math.max(estimate.getAsLong(), pageable.getOffset() + content.size());
+        return new ApproximatePage<>(content, pageable, total, true);
+    }
+
+    // 첫 페이지가 다 차지 않았거나 마지막 페이지면 content 만으로 전체 수를 알 수 있다. (count 쿼리 불필요)
+    private static boolean isTotalKnown(List<?> content, Pageable pageable) {
+        return pageable.isUnpaged()
+                || (pageable.getPageSize() > content.size() && (pageable.getOffset() == 0 || !content.isEmpty()));
+    }
+}
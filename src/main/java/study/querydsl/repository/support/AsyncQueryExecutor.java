@@ -0,0 +1,92 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 비동기 조회 전용 bounded executor. 요청 쓰레드(Tomcat) 대신 이 쓰레드에서 JDBC 호출을 기다린다.
+ * 메트릭: executor.queued / executor.active / executor.idle(큐 대기 시간) {name=querydsl.async}, querydsl.async.rejected
+ */
+@Component
+public class AsyncQueryExecutor {
+
+    private final AsyncQueryProperties properties;
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService monitoredExecutor;
+    private final Counter rejected;
+
+    public AsyncQueryExecutor(AsyncQueryProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                properties.getThreads(), properties.getThreads(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "async-query-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.monitoredExecutor = ExecutorServiceMetrics.monitor(registry, executor, "querydsl.async");
+        this.rejected = Counter.builder("querydsl.async.rejected").register(registry);
+    }
+
+    public long getTimeoutMillis() {
+        return properties.getTimeout().toMillis();
+    }
+
+    /**
+     * 큐가 가득 차면 TaskRejectedException, 제한 시간을 넘기면 TimeoutException 으로 완료된다.
+     * 취소되거나 시간이 초과되면 실행 중인 쓰레드를 interrupt 한다.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> query) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = monitoredExecutor.submit(() -> {
+                // 큐에서 기다리는 동안 취소/시간 초과된 요청은 실행하지 않는다.
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(query.get());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            result.completeExceptionally(new TaskRejectedException("async query executor is saturated", e));
+            return result;
+        }
+
+        result.whenComplete((value, e) -> {
+            if (result.isCancelled() || e instanceof TimeoutException) {
+                task.cancel(true);
+            }
+        });
+        return result.orTimeout(getTimeoutMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,20 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.async")
+public class AsyncQueryProperties {
+
+    // 쓰레드마다 커넥션을 하나씩 쓰므로 커넥션 풀 크기보다 작게 잡는다.
+    // 같은 풀을 병렬 count, 검색 캐시 갱신, 메모리 인덱스/캐시 적재 쓰레드도 사용한다. (application.yml 의 hikari 설정 참고)
+    private int threads = 8;
+    // 큐가 가득 차면 즉시 거절(503)한다.
+    private int queueCapacity = 100;
+    // 큐 대기 시간을 포함한 전체 제한 시간
+    private Duration timeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,134 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 영속성 컨텍스트를 비우지(clear) 않는 벌크 update/delete.
+ * 대상 id 를 먼저 조회한 뒤 id 와 원래 조건으로 벌크 연산을 실행하고,
+ * 영속성 컨텍스트에 있는 대상 엔티티만 refresh(update) 또는 detach(delete) 한다.
+ * 2차 캐시도 대상 id 만 제거하고 애플리케이션 캐시에는 변경된 id 목록을 알린다.
+ */
+@Component
+public class BulkOperations {
+
+    // IN 절 파라미터 개수 제한
+    private static final int CHUNK_SIZE = 1_000;
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final EntityChangeNotifier notifier;
+
+    public BulkOperations(EntityManager em, EntityChangeNotifier notifier) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.notifier = notifier;
+    }
+
+    @Transactional
+    public <T> long update(EntityPath<T> entity, NumberPath<Long> id, Predicate where,
+                           Consumer<JPAUpdateClause> assignments) {
+        List<Long> ids = prepare(entity, id, where);
+
+        // 조회 후 다른 트랜잭션이 바꿔서 조건에서 벗어난 행은 변경하지 않도록 조건을 다시 적용한다.
+        // (반환값은 실제로 변경된 행 수. 알림/refresh 대상은 조회한 id 전체라서 더 많을 수 있다.)
+        long count = 0;
+        // 청크 update 와 대상 엔티티 refresh 는 의도적인 반복이다.
+        try (NPlusOneDetector.Suppression suppression = NPlusOneDetector.suppress()) {
+            for (List<Long> chunk : chunks(ids)) {
+                JPAUpdateClause update = queryFactory.update(entity).where(id.in(chunk), where);
+                assignments.accept(update);
+                count += update.execute();
+            }
+
+            for (Long targetId : ids) {
+                Object managed = managedEntity(entity.getType(), targetId);
+                if (managed != null) {
+                    em.refresh(managed);
+                }
+            }
+        }
+        afterBulk(entity.getType(), ids);
+        return count;
+    }
+
+    @Transactional
+    public <T> long delete(EntityPath<T> entity, NumberPath<Long> id, Predicate where) {
+        return delete(entity, id, where, managed -> {
+        });
+    }
+
+    // beforeDetach: 삭제된 엔티티를 detach 하기 전에 연관관계 컬렉션 정리 등을 수행
+    @Transactional
+    public <T> long delete(EntityPath<T> entity, NumberPath<Long> id, Predicate where, Consumer<T> beforeDetach) {
+        List<Long> ids = prepare(entity, id, where);
+
+        long count = 0;
+        for (List<Long> chunk : chunks(ids)) {
+            // update 와 같이 조건을 다시 적용 (조회 후 조건에서 벗어난 행은 지우지 않는다.)
+            count += queryFactory.delete(entity).where(id.in(chunk), where).execute();
+        }
+
+        PersistenceContext persistenceContext = em.unwrap(SessionImplementor.class).getPersistenceContext();
+        for (Long targetId : ids) {
+            T managed = entity.getType().cast(managedEntity(entity.getType(), targetId));
+            if (managed != null) {
+                beforeDetach.accept(managed);
+                em.detach(managed);
+            }
+            persistenceContext.removeProxy(entityKey(entity.getType(), targetId));
+        }
+        afterBulk(entity.getType(), ids);
+        return count;
+    }
+
+    private <T> List<Long> prepare(EntityPath<T> entity, NumberPath<Long> id, Predicate where) {
+        // 아직 반영되지 않은 변경을 먼저 DB 에 반영 (refresh 시 유실 방지, 대상 조회에 포함)
+        em.flush();
+        return queryFactory
+                .select(id)
+                .from(entity)
+                .where(where)
+                .fetch();
+    }
+
+    private void afterBulk(Class<?> type, List<Long> ids) {
+        for (Long targetId : ids) {
+            em.getEntityManagerFactory().getCache().evict(type, targetId);
+        }
+        notifier.bulkChanged(type, ids);
+    }
+
+    private Object managedEntity(Class<?> type, Long id) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        return session.getPersistenceContext().getEntity(entityKey(type, id));
+    }
+
+    private EntityKey entityKey(Class<?> type, Long id) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(type);
+        return session.generateEntityKey(id, persister);
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            chunks.add(ids.subList(from, Math.min(from + CHUNK_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+}
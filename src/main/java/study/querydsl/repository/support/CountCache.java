@@ -0,0 +1,122 @@
+package study.querydsl.repository.support;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 검색 조건별 count 쿼리 결과 캐시 (LRU + TTL).
+ * Member, Team 이 변경되면 전체 무효화된다.
+ */
+@Component
+@RequiredArgsConstructor
+public class CountCache implements EntityChangeListener {
+
+    private final CountCacheProperties properties;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // 무효화 이후에 끝난 계산 결과가 캐시에 들어가지 않도록 세대를 비교한다.
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Map<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+            return size() > properties.getMaxSize();
+        }
+    };
+
+    public static List<Object> key(String name, Object... parts) {
+        Object[] key = new Object[parts.length + 1];
+        key[0] = name;
+        System.arraycopy(parts, 0, key, 1, parts.length);
+        return Arrays.asList(key);
+    }
+
+    public long get(Object key, LongSupplier countQuery) {
+        if (!properties.isEnabled() || inWriteTransaction()) {
+            return countQuery.getAsLong();
+        }
+
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt - now > 0) {
+                hits.incrementAndGet();
+                return entry.count;
+            }
+        }
+
+        misses.incrementAndGet();
+        long startGeneration = generation.get();
+        long count = countQuery.getAsLong();
+        synchronized (entries) {
+            if (generation.get() == startGeneration) {
+                entries.put(key, new Entry(count, System.nanoTime() + properties.getTtl().toNanos()));
+            }
+        }
+        return count;
+    }
+
+    // 통계에 반영하지 않고 유효한 항목이 있는지만 확인
+    public boolean contains(Object key) {
+        if (!properties.isEnabled() || inWriteTransaction()) {
+            return false;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            return entry != null && entry.expiresAt - System.nanoTime() > 0;
+        }
+    }
+
+    public LongSupplier supplier(Object key, LongSupplier countQuery) {
+        return () -> get(key, countQuery);
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    // 쓰기 트랜잭션 안의 count 는 커밋되지 않은 변경을 포함할 수 있으므로 캐시하지 않는다.
+    private boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void onEntityChange(EntityChangeEvent event) {
+        if (event.isAbout(Member.class, Team.class)) {
+            invalidateAll();
+        }
+    }
+
+    private static class Entry {
+        private final long count;
+        private final long expiresAt;
+
+        private Entry(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.count-cache")
+public class CountCacheProperties {
+
+    private boolean enabled = true;
+    private int maxSize = 1_000;
+    private Duration ttl = Duration.ofSeconds(30);
+}
@@ -0,0 +1,13 @@
+package study.querydsl.repository.support;
+
+import java.util.OptionalLong;
+
+/**
+ * count 쿼리 없이 전체 수를 추정한다. (ex. 유지되고 있는 팀/나이 히스토그램)
+ * 추정할 수 없으면 빈 값을 반환하며, 이때는 정확한 count 쿼리를 실행한다.
+ */
+@FunctionalInterface
+public interface CountEstimator {
+
+    OptionalLong estimate();
+}
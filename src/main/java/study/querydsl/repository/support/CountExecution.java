@@ -0,0 +1,8 @@
+package study.querydsl.repository.support;
+
+public enum CountExecution {
+    // content 조회 후 같은 커넥션에서 count 조회
+    SEQUENTIAL,
+    // count 를 별도 읽기 전용 커넥션에서 content 조회와 동시에 실행
+    PARALLEL
+}
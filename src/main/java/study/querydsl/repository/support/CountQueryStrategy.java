@@ -0,0 +1,16 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+
+/**
+ * content 쿼리로부터 count 쿼리를 만든다. 반환된 쿼리는 fetchCount() 로 실행된다.
+ * 기본 구현은 DerivedCountQueryStrategy 이고, 다른 빈을 @Primary 로 등록하면 교체된다.
+ */
+@FunctionalInterface
+public interface CountQueryStrategy {
+
+    // em: count 를 실행할 EntityManager (병렬 count 면 별도 커넥션의 EntityManager)
+    JPAQuery<?> countQuery(JPAQuery<?> contentQuery, EntityManager em);
+}
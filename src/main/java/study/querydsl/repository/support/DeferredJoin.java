@@ -0,0 +1,87 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.SimpleExpression;
+import com.querydsl.jpa.JPQLQuery;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * deferred join 페이징.
+ * 1) 같은 조건/정렬로 id 만 offset/limit 조회 (인덱스만 읽고 건너뛴 행의 나머지 컬럼은 읽지 않는다.)
+ * 2) 그 페이지의 id 로 원래 projection 과 조인을 조회해서 1) 의 순서대로 돌려준다.
+ * group by / distinct / 컬렉션 조인 쿼리는 id 가 행을 대표하지 않으므로 그대로 offset 페이징한다.
+ * 1) 은 엔티티를 select 하지 않으므로 fetch join 을 일반 조인으로 바꾼다.
+ */
+public final class DeferredJoin {
+
+    private DeferredJoin() {
+    }
+
+    // paginate: 조회 쿼리에 offset/limit (과 정렬)을 적용하는 함수
+    @SuppressWarnings("unchecked")
+    public static <T, ID> List<T> fetch(JPAQuery<T> contentQuery, EntityManager em, SimpleExpression<ID> id,
+                                        UnaryOperator<JPQLQuery<?>> paginate) {
+        QueryMetadata metadata = contentQuery.getMetadata();
+        if (!metadata.getGroupBy().isEmpty() || metadata.isDistinct()
+                || metadata.getJoins().stream().anyMatch(DerivedCountQueryStrategy::isCollectionJoin)) {
+            return (List<T>) paginate.apply(contentQuery).fetch();
+        }
+        Expression<T> projection = (Expression<T>) metadata.getProjection();
+
+        List<ID> ids = (List<ID>) paginate.apply(idQuery(metadata, em, id)).fetch();
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // id 로 이미 걸러졌으므로 where/order by/offset 은 다시 적용하지 않는다.
+        JPAQuery<T> rowQuery = contentQuery.clone();
+        QueryMetadata rowMetadata = rowQuery.getMetadata();
+        rowMetadata.clearWhere();
+        rowMetadata.clearOrderBy();
+        rowMetadata.setModifiers(QueryModifiers.EMPTY);
+        List<Tuple> rows = rowQuery.select(id, projection)
+                .where(id.in(ids))
+                .fetch();
+
+        Map<ID, T> byId = new HashMap<>(rows.size() * 2);
+        for (Tuple row : rows) {
+            byId.put(row.get(id), row.get(projection));
+        }
+        List<T> content = new ArrayList<>(ids.size());
+        for (ID value : ids) {
+            T row = byId.get(value);
+            // 두 쿼리 사이에 삭제된 행은 빠진다.
+            if (row != null) {
+                content.add(row);
+            }
+        }
+        return content;
+    }
+
+    // 같은 조인/조건/정렬로 id 만 조회
+    private static <ID> JPAQuery<ID> idQuery(QueryMetadata source, EntityManager em, SimpleExpression<ID> id) {
+        QueryMetadata metadata = new DefaultQueryMetadata();
+        for (JoinExpression join : source.getJoins()) {
+            DerivedCountQueryStrategy.addJoinWithoutFetch(metadata, join);
+        }
+        metadata.addWhere(source.getWhere());
+        source.getOrderBy().forEach(metadata::addOrderBy);
+        metadata.setModifiers(source.getModifiers());
+        DerivedCountQueryStrategy.copyParams(source, metadata);
+        metadata.setProjection(id);
+        return new JPAQuery<>(em, metadata);
+    }
+}
@@ -0,0 +1,215 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.MapExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * content 쿼리의 메타데이터로 count 쿼리를 만든다.
+ * - order by, offset/limit, projection 은 제외한다.
+ * - where/group by/having/다른 조인에서 참조하지 않는 to-one left join 은 행 수를 바꾸지 않으므로 제외한다.
+ *   (inner join, 컬렉션 조인은 행 수가 바뀔 수 있으므로 유지)
+ * - fetch join 은 일반 조인으로 바꾼다. (count 에서는 fetch join 을 쓸 수 없다.)
+ * - group by 쿼리는 그룹 수를 센다.
+ *   having 이 없는 단일 키(path) group by 는 count(distinct 키) 로 센다. (null 키도 한 그룹이므로 따로 더한다.)
+ *   그 외(여러 키, having, path 가 아닌 키)는 JPQL 이 from 절 서브쿼리를 지원하지 않으므로
+ *   group by 키 한 컬럼만 조회해서 결과 행 수를 센다. (그룹 수만큼 행을 읽으므로 그룹이 많으면 느리다.)
+ */
+@Component
+public class DerivedCountQueryStrategy implements CountQueryStrategy {
+
+    @Override
+    public JPAQuery<?> countQuery(JPAQuery<?> contentQuery, EntityManager em) {
+        QueryMetadata source = contentQuery.getMetadata();
+        if (source.isDistinct()) {
+            // distinct 는 projection 기준으로 세야 하므로 (count(distinct ..)) 정렬/페이징만 제외
+            JPAQuery<?> query = contentQuery.clone(em);
+            query.getMetadata().clearOrderBy();
+            query.getMetadata().setModifiers(QueryModifiers.EMPTY);
+            return query;
+        }
+
+        Set<Path<?>> referenced = new HashSet<>();
+        collectRoots(source.getWhere(), referenced);
+        collectRoots(source.getHaving(), referenced);
+        source.getGroupBy().forEach(groupBy -> collectRoots(groupBy, referenced));
+
+        // 뒤쪽 조인이 앞쪽 조인의 alias 를 참조할 수 있으므로 뒤에서부터 판단
+        List<JoinExpression> joins = source.getJoins();
+        boolean[] keep = new boolean[joins.size()];
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            keep[i] = i == 0 || !isDroppable(join, referenced);
+            if (keep[i]) {
+                collectRoots(join.getTarget(), referenced);
+                collectRoots(join.getCondition(), referenced);
+            }
+        }
+
+        QueryMetadata metadata = new DefaultQueryMetadata();
+        for (int i = 0; i < joins.size(); i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            addJoinWithoutFetch(metadata, joins.get(i));
+        }
+        metadata.addWhere(source.getWhere());
+        copyParams(source, metadata);
+
+        if (source.getGroupBy().isEmpty()) {
+            return new JPAQuery<Object>(em, metadata);
+        }
+        Expression<?> key = source.getGroupBy().get(0);
+        if (source.getGroupBy().size() == 1 && source.getHaving() == null && key instanceof Path) {
+            metadata.setProjection(key);
+            return new DistinctKeyCountQuery(em, metadata, key);
+        }
+        source.getGroupBy().forEach(metadata::addGroupBy);
+        metadata.addHaving(source.getHaving());
+        metadata.setProjection(key);
+        return new GroupCountQuery(em, metadata);
+    }
+
+    // fetch join 은 select 절에 fetch 대상의 소유 엔티티가 있어야 하므로 일반 조인으로 바꾼다.
+    static void addJoinWithoutFetch(QueryMetadata metadata, JoinExpression join) {
+        metadata.addJoin(join.getType(), join.getTarget());
+        if (join.getCondition() != null) {
+            metadata.addJoinCondition(join.getCondition());
+        }
+        for (JoinFlag flag : join.getFlags()) {
+            if (!flag.equals(JPAQueryMixin.FETCH) && !flag.equals(JPAQueryMixin.FETCH_ALL_PROPERTIES)) {
+                metadata.addJoinFlag(flag);
+            }
+        }
+    }
+
+    // 참조되지 않는 alias 의 to-one left join
+    private static boolean isDroppable(JoinExpression join, Set<Path<?>> referenced) {
+        if (join.getType() != JoinType.LEFTJOIN || !(join.getTarget() instanceof Operation)) {
+            return false;
+        }
+        Operation<?> target = (Operation<?>) join.getTarget();
+        if (target.getOperator() != Ops.ALIAS) {
+            return false;
+        }
+        Expression<?> association = target.getArg(0);
+        Expression<?> alias = target.getArg(1);
+        return association instanceof Path
+                && !isCollection(association)
+                && !referenced.contains(alias);
+    }
+
+    // 컬렉션(to-many) 조인. 한 행이 여러 행이 된다.
+    static boolean isCollectionJoin(JoinExpression join) {
+        Expression<?> target = join.getTarget();
+        if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+            target = ((Operation<?>) target).getArg(0);
+        }
+        return isCollection(target);
+    }
+
+    private static boolean isCollection(Expression<?> association) {
+        return association instanceof CollectionExpression
+                || association instanceof MapExpression
+                || Collection.class.isAssignableFrom(association.getType())
+                || Map.class.isAssignableFrom(association.getType());
+    }
+
+    private static void collectRoots(Object expr, Set<Path<?>> roots) {
+        if (expr instanceof Path) {
+            roots.add(((Path<?>) expr).getRoot());
+        } else if (expr instanceof Operation) {
+            ((Operation<?>) expr).getArgs().forEach(arg -> collectRoots(arg, roots));
+        } else if (expr instanceof TemplateExpression) {
+            ((TemplateExpression<?>) expr).getArgs().forEach(arg -> collectRoots(arg, roots));
+        } else if (expr instanceof FactoryExpression) {
+            ((FactoryExpression<?>) expr).getArgs().forEach(arg -> collectRoots(arg, roots));
+        } else if (expr instanceof SubQueryExpression) {
+            // 서브쿼리가 바깥 alias 를 참조할 수 있으므로 서브쿼리 전체를 본다.
+            QueryMetadata metadata = ((SubQueryExpression<?>) expr).getMetadata();
+            metadata.getJoins().forEach(join -> {
+                collectRoots(join.getTarget(), roots);
+                collectRoots(join.getCondition(), roots);
+            });
+            collectRoots(metadata.getWhere(), roots);
+            collectRoots(metadata.getHaving(), roots);
+            collectRoots(metadata.getProjection(), roots);
+            metadata.getGroupBy().forEach(groupBy -> collectRoots(groupBy, roots));
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static void copyParams(QueryMetadata source, QueryMetadata target) {
+        for (Map.Entry<ParamExpression<?>, Object> param : source.getParams().entrySet()) {
+            target.setParam((ParamExpression) param.getKey(), param.getValue());
+        }
+    }
+
+    // 그룹 수 = count(distinct 키) + (null 키가 있으면 1)
+    private static class DistinctKeyCountQuery extends JPAQuery<Object> {
+
+        private final Expression<?> key;
+
+        private DistinctKeyCountQuery(EntityManager em, QueryMetadata metadata, Expression<?> key) {
+            super(em, metadata);
+            this.key = key;
+        }
+
+        @Override
+        public long fetchCount() {
+            NumberExpression<Long> distinctKeys = Expressions.numberOperation(Long.class, Ops.AggOps.COUNT_DISTINCT_AGG, key);
+            NumberExpression<Integer> nullKey = new CaseBuilder()
+                    .when(Expressions.booleanOperation(Ops.IS_NULL, key)).then(1)
+                    .otherwise(0)
+                    .max();
+            Tuple row = clone(entityManager).select(distinctKeys, nullKey).fetchOne();
+            if (row == null) {
+                return 0;
+            }
+            // 집계 결과 타입은 JPA 구현체에 따라 다를 수 있다.
+            Number count = row.get(0, Number.class);
+            Number hasNull = row.get(1, Number.class);
+            return (count == null ? 0 : count.longValue()) + (hasNull == null ? 0 : hasNull.longValue());
+        }
+    }
+
+    // 그룹 수 = group by 결과 행 수 (DistinctKeyCountQuery 로 셀 수 없는 경우)
+    private static class GroupCountQuery extends JPAQuery<Object> {
+
+        private GroupCountQuery(EntityManager em, QueryMetadata metadata) {
+            super(em, metadata);
+        }
+
+        @Override
+        public long fetchCount() {
+            return fetch().size();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+import java.util.Collection;
+
+/**
+ * 엔티티 변경 이벤트. Hibernate 커밋 이벤트와 벌크(update/delete) 연산에서 발행된다.
+ * BULK 이벤트는 id, entity 대신 변경된 id 목록(ids)을 가진다. ids 가 null 이면 변경 범위를 모르는 경우다.
+ * 벌크 연산은 커밋 전에도 한 번 발행된다. (committed = false, EntityChangeNotifier)
+ * 커밋 전 이벤트는 무효화에만 쓰고, DB 를 다시 읽는 리스너는 무시한다. (다른 트랜잭션에서는 아직 옛 값이 보인다.)
+ */
+@Getter
+public class EntityChangeEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE, BULK
+    }
+
+    private final Type type;
+    private final Class<?> entityType;
+    private final Object id;
+    private final Object entity;
+    private final Collection<?> ids;
+    private final boolean committed;
+
+    public EntityChangeEvent(Type type, Class<?> entityType, Object id, Object entity) {
+        this(type, entityType, id, entity, null, true);
+    }
+
+    private EntityChangeEvent(Type type, Class<?> entityType, Object id, Object entity, Collection<?> ids,
+                              boolean committed) {
+        this.type = type;
+        this.entityType = entityType;
+        this.id = id;
+        this.entity = entity;
+        this.ids = ids;
+        this.committed = committed;
+    }
+
+    public static EntityChangeEvent bulk(Class<?> entityType) {
+        return new EntityChangeEvent(Type.BULK, entityType, null, null, null, true);
+    }
+
+    public static EntityChangeEvent bulk(Class<?> entityType, Collection<?> ids) {
+        return new EntityChangeEvent(Type.BULK, entityType, null, null, ids, true);
+    }
+
+    // 같은 이벤트의 커밋 전 버전
+    public EntityChangeEvent beforeCommit() {
+        return new EntityChangeEvent(type, entityType, id, entity, ids, false);
+    }
+
+    public boolean isAbout(Class<?>... types) {
+        for (Class<?> type : types) {
+            if (type.isAssignableFrom(entityType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
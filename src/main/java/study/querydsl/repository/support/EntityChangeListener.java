@@ -0,0 +1,10 @@
+package study.querydsl.repository.support;
+
+/**
+ * {@link EntityChangeNotifier} 가 발행하는 엔티티 변경 이벤트를 받는다.
+ * 구현체를 스프링 빈으로 등록하면 자동으로 구독된다.
+ */
+public interface EntityChangeListener {
+
+    void onEntityChange(EntityChangeEvent event);
+}
@@ -0,0 +1,56 @@
+package study.querydsl.repository.support;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EntityChangeNotifier {
+
+    private final ObjectProvider<EntityChangeListener> listeners;
+
+    public void publish(EntityChangeEvent event) {
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.onEntityChange(event);
+            } catch (RuntimeException e) {
+                // 캐시 갱신 실패가 쓰기 트랜잭션을 깨뜨리면 안된다.
+                log.warn("EntityChangeListener failed. listener={}, event={}", listener, event.getType(), e);
+            }
+        });
+    }
+
+    /**
+     * 벌크 연산 이후 호출. 같은 트랜잭션 안의 조회를 위해 즉시 한 번(committed = false),
+     * 커밋 이전에 다른 트랜잭션이 옛 값을 다시 캐시했을 수 있으므로 커밋 후 한 번 더 발행한다.
+     * 트랜잭션 밖이면 이미 반영되었으므로 한 번만 발행한다.
+     */
+    public void bulkChanged(Class<?> entityType) {
+        bulkChanged(EntityChangeEvent.bulk(entityType));
+    }
+
+    public void bulkChanged(Class<?> entityType, Collection<?> ids) {
+        bulkChanged(EntityChangeEvent.bulk(entityType, ids));
+    }
+
+    private void bulkChanged(EntityChangeEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(event);
+            return;
+        }
+        publish(event.beforeCommit());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(event);
+            }
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package study.querydsl.repository.support;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Hibernate 커밋 후 insert/update/delete 이벤트를 {@link EntityChangeNotifier} 로 전달한다.
+ */
+@RequiredArgsConstructor
+public class HibernateEntityChangeListener implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityChangeNotifier notifier;
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        notifier.publish(new EntityChangeEvent(EntityChangeEvent.Type.INSERT,
+                event.getPersister().getMappedClass(), event.getId(), event.getEntity()));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        notifier.publish(new EntityChangeEvent(EntityChangeEvent.Type.UPDATE,
+                event.getPersister().getMappedClass(), event.getId(), event.getEntity()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        notifier.publish(new EntityChangeEvent(EntityChangeEvent.Type.DELETE,
+                event.getPersister().getMappedClass(), event.getId(), event.getEntity()));
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return true;
+    }
+}
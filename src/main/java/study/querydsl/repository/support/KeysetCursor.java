@@ -0,0 +1,66 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * keyset(seek) 페이징 커서.
+ * 정렬 기준(property, direction) + 마지막 행의 정렬 값 + id 를 base64url 로 인코딩한 불투명 문자열이다.
+ * 정렬 값은 null 과 빈 문자열을 구분하도록 값이 있으면 앞에 표시 문자를 붙인다.
+ * 잘못되었거나 변조된 커서는 IllegalArgumentException
+ */
+@Getter
+public class KeysetCursor {
+
+    private static final String DELIMITER = "|";
+    private static final String VALUE = "=";
+
+    private final String property;
+    private final Sort.Direction direction;
+    private final Long id;
+    private final String value;
+
+    public KeysetCursor(String property, Sort.Direction direction, Long id, String value) {
+        Assert.hasText(property, "Cursor property must not be empty!");
+        Assert.notNull(direction, "Cursor direction must not be null!");
+        Assert.notNull(id, "Cursor id must not be null!");
+        this.property = property;
+        this.direction = direction;
+        this.id = id;
+        this.value = value;
+    }
+
+    public boolean isAscending() {
+        return direction.isAscending();
+    }
+
+    public String encode() {
+        String raw = property + DELIMITER + direction.name() + DELIMITER + id + DELIMITER + (value == null ? "" : VALUE + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        Assert.hasText(cursor, "Cursor must not be empty!");
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+
+        // value 에 구분자가 포함될 수 있으므로 앞의 세 토큰만 분리한다.
+        String[] tokens = raw.split("\\" + DELIMITER, 4);
+        Assert.isTrue(tokens.length == 4, "Invalid cursor: " + cursor);
+        Assert.isTrue(tokens[3].isEmpty() || tokens[3].startsWith(VALUE), "Invalid cursor: " + cursor);
+        String value = tokens[3].isEmpty() ? null : tokens[3].substring(VALUE.length());
+        try {
+            return new KeysetCursor(tokens[0], Sort.Direction.valueOf(tokens[1]), Long.valueOf(tokens[2]), value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * keyset 페이징 결과. 전체 count 대신 다음 페이지 커서만 제공한다.
+ */
+@Getter
+public class KeysetSlice<T> {
+
+    private final List<T> content;
+    private final int size;
+    private final boolean hasNext;
+    private final String nextCursor;
+
+    public KeysetSlice(List<T> content, int size, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.size = size;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,144 @@
+package study.querydsl.repository.support;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * DTO 클래스별 생성자, setter, 필드 접근자 캐시.
+ * setter 와 기본 생성자는 LambdaMetafactory 로 만든 람다, 필드와 인자 생성자는 MethodHandle 을 사용한다.
+ */
+final class LambdaAccessors {
+
+    private static final Map<Class<?>, Supplier<Object>> FACTORIES = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, BiConsumer<Object, Object>>> SETTERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, BiConsumer<Object, Object>>> FIELDS = new ConcurrentHashMap<>();
+    private static final Map<Constructor<?>, MethodHandle> CONSTRUCTORS = new ConcurrentHashMap<>();
+
+    private LambdaAccessors() {
+    }
+
+    static Supplier<Object> factory(Class<?> type) {
+        return FACTORIES.computeIfAbsent(type, LambdaAccessors::createFactory);
+    }
+
+    static BiConsumer<Object, Object> setter(Class<?> type, String property) {
+        return SETTERS.computeIfAbsent(type, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(property, p -> createSetter(type, p));
+    }
+
+    static BiConsumer<Object, Object> field(Class<?> type, String property) {
+        return FIELDS.computeIfAbsent(type, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(property, p -> createFieldSetter(type, p));
+    }
+
+    // (Object[]) -> Object 형태로 맞춘 생성자 핸들
+    static MethodHandle constructor(Constructor<?> constructor) {
+        return CONSTRUCTORS.computeIfAbsent(constructor, LambdaAccessors::createConstructor);
+    }
+
+    private static MethodHandles.Lookup lookup(Class<?> type) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> createFactory(Class<?> type) {
+        try {
+            MethodHandles.Lookup lookup = lookup(type);
+            MethodHandle target = lookup.findConstructor(type, MethodType.methodType(void.class));
+            CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    target,
+                    MethodType.methodType(type));
+            return (Supplier<Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("No accessible default constructor on " + type.getName(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> createSetter(Class<?> type, String property) {
+        Method setter = findSetter(type, property);
+        try {
+            MethodHandles.Lookup lookup = lookup(type);
+            MethodHandle target = lookup.unreflect(setter);
+            Class<?> parameterType = MethodType.methodType(setter.getParameterTypes()[0]).wrap().returnType();
+            CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    target,
+                    MethodType.methodType(void.class, type, parameterType));
+            return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Cannot create setter for " + type.getName() + "." + property, e);
+        }
+    }
+
+    private static BiConsumer<Object, Object> createFieldSetter(Class<?> type, String property) {
+        Field field = findField(type, property);
+        MethodHandle handle;
+        try {
+            handle = lookup(field.getDeclaringClass()).unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access field " + type.getName() + "." + property, e);
+        }
+        return (bean, value) -> {
+            try {
+                handle.invokeExact(bean, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static MethodHandle createConstructor(Constructor<?> constructor) {
+        try {
+            return lookup(constructor.getDeclaringClass()).unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, constructor.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access constructor " + constructor, e);
+        }
+    }
+
+    private static Method findSetter(Class<?> type, String property) {
+        String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.getName().equals(name) && method.getParameterCount() == 1
+                        && !Modifier.isStatic(method.getModifiers())) {
+                    return method;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No setter " + name + " on " + type.getName());
+    }
+
+    private static Field findField(Class<?> type, String property) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(property);
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    return field;
+                }
+            } catch (NoSuchFieldException ignored) {
+                // 상위 클래스에서 계속 탐색
+            }
+        }
+        throw new IllegalArgumentException("No field " + property + " on " + type.getName());
+    }
+}
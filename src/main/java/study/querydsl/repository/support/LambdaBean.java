@@ -0,0 +1,56 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * setter(bean) 또는 필드(fields) 주입 프로젝션. {@link LambdaProjections} 로 생성한다.
+ */
+class LambdaBean<T> extends FactoryExpressionBase<T> {
+
+    private final List<Expression<?>> args;
+    private final Supplier<Object> factory;
+    private final BiConsumer<Object, Object>[] accessors;
+
+    @SuppressWarnings("unchecked")
+    LambdaBean(Class<? extends T> type, boolean fieldAccess, Expression<?>... args) {
+        super(type);
+        this.args = Collections.unmodifiableList(Arrays.asList(args));
+        this.factory = LambdaAccessors.factory(type);
+        this.accessors = new BiConsumer[args.length];
+        for (int i = 0; i < args.length; i++) {
+            String property = LambdaProjections.propertyName(args[i]);
+            accessors[i] = fieldAccess ? LambdaAccessors.field(type, property) : LambdaAccessors.setter(type, property);
+        }
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T newInstance(Object... a) {
+        Object bean = factory.get();
+        for (int i = 0; i < a.length; i++) {
+            // Projections.bean 과 같이 null 은 주입하지 않는다.(primitive 필드 보호)
+            if (a[i] != null) {
+                accessors[i].accept(bean, a[i]);
+            }
+        }
+        return (T) bean;
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+}
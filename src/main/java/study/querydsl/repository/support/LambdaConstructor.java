@@ -0,0 +1,89 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 생성자 주입 프로젝션. {@link LambdaProjections} 로 생성한다.
+ */
+class LambdaConstructor<T> extends FactoryExpressionBase<T> {
+
+    private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS = Map.of(
+            boolean.class, false, char.class, '\0', byte.class, (byte) 0, short.class, (short) 0,
+            int.class, 0, long.class, 0L, float.class, 0f, double.class, 0d);
+
+    private final List<Expression<?>> args;
+    private final MethodHandle constructor;
+    // primitive 파라미터에 null 이 들어오면 기본값으로 대체
+    private final Object[] primitiveDefaults;
+
+    LambdaConstructor(Class<? extends T> type, Expression<?>... args) {
+        super(type);
+        this.args = Collections.unmodifiableList(Arrays.asList(args));
+
+        Constructor<?> target = findConstructor(type, args);
+        this.constructor = LambdaAccessors.constructor(target);
+        Class<?>[] parameterTypes = target.getParameterTypes();
+        this.primitiveDefaults = new Object[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (parameterTypes[i].isPrimitive()) {
+                primitiveDefaults[i] = PRIMITIVE_DEFAULTS.get(parameterTypes[i]);
+            }
+        }
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T newInstance(Object... a) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == null && primitiveDefaults[i] != null) {
+                a[i] = primitiveDefaults[i];
+            }
+        }
+        try {
+            return (T) (Object) constructor.invokeExact(a);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+
+    private static Constructor<?> findConstructor(Class<?> type, Expression<?>[] args) {
+        for (Constructor<?> candidate : type.getDeclaredConstructors()) {
+            if (Modifier.isPrivate(candidate.getModifiers()) || candidate.getParameterCount() != args.length) {
+                continue;
+            }
+            Class<?>[] parameterTypes = candidate.getParameterTypes();
+            boolean matches = true;
+            for (int i = 0; i < args.length && matches; i++) {
+                Class<?> parameterType = MethodType.methodType(parameterTypes[i]).wrap().returnType();
+                matches = parameterType.isAssignableFrom(args[i].getType());
+            }
+            if (matches) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("No constructor on " + type.getName() + " for " + Arrays.toString(args));
+    }
+}
@@ -0,0 +1,45 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+
+/**
+ * {@link com.querydsl.core.types.Projections} 의 bean, fields, constructor 와 같은 용도지만
+ * 행마다 리플렉션을 호출하지 않는다. DTO 클래스별로 MethodHandle / LambdaMetafactory 기반
+ * 생성자, setter 를 한 번만 만들어 캐시하고 재사용한다.
+ */
+public final class LambdaProjections {
+
+    private LambdaProjections() {
+    }
+
+    // setter 주입 (기본 생성자 필요)
+    public static <T> FactoryExpression<T> bean(Class<? extends T> type, Expression<?>... exprs) {
+        return new LambdaBean<>(type, false, exprs);
+    }
+
+    // 필드 직접 주입 (기본 생성자 필요)
+    public static <T> FactoryExpression<T> fields(Class<? extends T> type, Expression<?>... exprs) {
+        return new LambdaBean<>(type, true, exprs);
+    }
+
+    // 생성자 주입 (파라미터 순서 = 표현식 순서)
+    public static <T> FactoryExpression<T> constructor(Class<? extends T> type, Expression<?>... exprs) {
+        return new LambdaConstructor<>(type, exprs);
+    }
+
+    // path 이름 또는 as("alias") 의 별칭을 프로퍼티 이름으로 사용
+    static String propertyName(Expression<?> expr) {
+        if (expr instanceof Path) {
+            return ((Path<?>) expr).getMetadata().getName();
+        }
+        if (expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.ALIAS) {
+            Expression<?> alias = ((Operation<?>) expr).getArg(1);
+            return alias instanceof Path ? ((Path<?>) alias).getMetadata().getName() : alias.toString();
+        }
+        throw new IllegalArgumentException("Unsupported expression " + expr + ", use as(\"property\")");
+    }
+}
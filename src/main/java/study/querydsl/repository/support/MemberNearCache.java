@@ -0,0 +1,744 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchCondition.UsernameMatch;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * Member/Team 의 메모리 near-cache. search 조건(BooleanExpression)을 DB 대신 메모리에서 평가한다. (querydsl-collections 방식)
+ * 팀, 나이, username 보조 인덱스로 후보를 좁힌 뒤 조건 전체를 평가하며, SQL 과 같은 3값 논리(null = unknown)를 따른다.
+ * 커밋 이벤트로 갱신된다. 적재 전, 쓰기 트랜잭션 안(커밋되지 않은 변경), 지원하지 않는 조건이면 null 을 반환해서 SQL 로 실행하게 한다.
+ * 전체 적재는 primary 에서 읽는다. (replica 가 늦으면 적재 시작 전에 적용된 이벤트가 새 데이터에서 빠진다.)
+ * 이벤트로 알 수 없는 변경(직접 실행한 SQL, 다른 인스턴스)에 대비해서 reload-interval 마다 전체 다시 적재한다.
+ */
+@Slf4j
+@Component
+public class MemberNearCache implements EntityChangeListener {
+
+    private final EntityManager em;
+    private final TransactionTemplate primaryTransaction;
+    private final NearCacheProperties properties;
+    private final ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "near-cache-load");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // lock 으로 보호
+    private Rows rows = new Rows();
+    // 적재 중에 들어온 변경. 새 데이터로 교체하기 전에 순서대로 다시 적용한다.
+    private List<Consumer<Rows>> pending;
+    private volatile boolean ready;
+
+    public MemberNearCache(EntityManager em, PlatformTransactionManager transactionManager, NearCacheProperties properties) {
+        this.em = em;
+        // 전체 적재와 커밋 직후 재조회는 primary 에서 새 트랜잭션으로 읽는다. (replica 는 아직 반영되지 않았을 수 있다.)
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.primaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = properties;
+    }
+
+    /**
+     * @return 검색 결과(회원 id 순). 캐시를 사용할 수 없으면 null
+     */
+    public List<MemberTeamDto> search(MemberSearchCondition cond) {
+        return search(predicateOf(cond));
+    }
+
+    /**
+     * member, team(member.team) 경로에 대한 조건을 메모리에서 평가한다.
+     * @return 조건을 만족하는 회원(회원 id 순). 캐시를 사용할 수 없거나 지원하지 않는 조건이면 null
+     */
+    public List<MemberTeamDto> search(Predicate predicate) {
+        if (!properties.isEnabled() || !ready || inWriteTransaction()) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            List<MemberTeamDto> result = new ArrayList<>();
+            for (Long id : rows.candidates(predicate)) {
+                CachedMember cachedMember = rows.members.get(id);
+                if (cachedMember == null) {
+                    continue;
+                }
+                CachedTeam cachedTeam = cachedMember.teamId == null ? null : rows.teams.get(cachedMember.teamId);
+                if (predicate == null || Boolean.TRUE.equals(test(predicate, cachedMember, cachedTeam))) {
+                    result.add(new MemberTeamDto(cachedMember.id, cachedMember.username, cachedMember.age,
+                            cachedMember.teamId, cachedTeam == null ? null : cachedTeam.name));
+                }
+            }
+            hits.incrementAndGet();
+            return result;
+        } catch (UnsupportedPredicateException e) {
+            log.debug("near-cache unsupported predicate: {}", e.getMessage());
+            misses.incrementAndGet();
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // repository 의 search 와 같은 조건. (PREFIX/CONTAINS 는 username 인덱스 없이 바로 평가)
+    public static Predicate predicateOf(MemberSearchCondition cond) {
+        String username = cond.getUsername();
+        UsernameMatch match = cond.getUsernameMatch();
+        return ExpressionUtils.allOf(
+                !hasText(username) ? null
+                        : match == UsernameMatch.PREFIX ? member.username.startsWithIgnoreCase(username)
+                        : match == UsernameMatch.CONTAINS ? member.username.containsIgnoreCase(username)
+                        : member.username.eq(username),
+                hasText(cond.getTeamName()) ? team.name.eq(cond.getTeamName()) : null,
+                cond.getAgeGoe() != null ? member.age.goe(cond.getAgeGoe()) : null,
+                cond.getAgeLoe() != null ? member.age.loe(cond.getAgeLoe()) : null
+        );
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void onEntityChange(EntityChangeEvent event) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (event.isAbout(Member.class)) {
+            onMemberChange(event);
+        } else if (event.isAbout(Team.class)) {
+            onTeamChange(event);
+        }
+    }
+
+    private void onMemberChange(EntityChangeEvent event) {
+        switch (event.getType()) {
+            case INSERT:
+            case UPDATE:
+                CachedMember changed = cachedMemberOf((Long) event.getId(), (Member) event.getEntity());
+                mutate(target -> target.putMember(changed));
+                break;
+            case DELETE:
+                mutate(target -> target.removeMember((Long) event.getId()));
+                break;
+            case BULK:
+                // 커밋 전 이벤트는 무시한다. 커밋 후 같은 이벤트가 다시 발행된다.
+                if (!event.isCommitted()) {
+                    break;
+                }
+                if (event.getIds() == null) {
+                    loadAsync();
+                } else {
+                    // 커밋한 쓰레드를 붙잡지 않도록 적재 쓰레드에서 다시 읽는다.
+                    submitLoad(() -> reload(event.getIds()));
+                }
+                break;
+        }
+    }
+
+    private void onTeamChange(EntityChangeEvent event) {
+        switch (event.getType()) {
+            case INSERT:
+            case UPDATE:
+                CachedTeam changed = new CachedTeam((Long) event.getId(), ((Team) event.getEntity()).getName());
+                mutate(target -> target.putTeam(changed));
+                break;
+            case DELETE:
+                mutate(target -> target.removeTeam((Long) event.getId()));
+                break;
+            case BULK:
+                // 팀 벌크 연산은 없으므로 전체 다시 적재
+                if (event.isCommitted()) {
+                    loadAsync();
+                }
+                break;
+        }
+    }
+
+    private void mutate(Consumer<Rows> mutation) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(mutation);
+            }
+            mutation.accept(rows);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long interval = properties.getReloadInterval().toMillis();
+        submitLoad(this::load);
+        loader.scheduleWithFixedDelay(this::load, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void loadAsync() {
+        if (properties.isEnabled()) {
+            submitLoad(this::load);
+        }
+    }
+
+    // 테스트에서 실행 시점을 제어할 수 있도록 분리
+    protected void submitLoad(Runnable task) {
+        loader.execute(task);
+    }
+
+    // 벌크 연산 대상은 DB 에서 다시 읽는다. (삭제된 id 는 제거) 실패하면 SQL 로 검색하면서 전체 다시 적재한다.
+    private void reload(Collection<?> ids) {
+        List<CachedMember> reloaded;
+        try {
+            reloaded = reloadMembers(ids);
+        } catch (RuntimeException e) {
+            log.warn("near-cache reload failed, reloading all members", e);
+            ready = false;
+            load();
+            return;
+        }
+        mutate(target -> {
+            ids.forEach(id -> target.removeMember((Long) id));
+            reloaded.forEach(target::putMember);
+        });
+    }
+
+    public void load() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Rows loaded = new Rows();
+        try {
+            loadTeams((id, name) -> loaded.putTeam(new CachedTeam(id, name)));
+            loadMembers(cachedMember -> {
+                if (loaded.members.size() >= properties.getMaxMembers()) {
+                    throw new IllegalStateException("more than " + properties.getMaxMembers() + " members");
+                }
+                loaded.putMember(cachedMember);
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            ready = false;
+            log.warn("near-cache load failed, searches use SQL", e);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            pending.forEach(mutation -> mutation.accept(loaded));
+            pending = null;
+            rows = loaded;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("near-cache loaded: {} teams, {} members in {} ms",
+                loaded.teams.size(), loaded.members.size(), System.currentTimeMillis() - start);
+    }
+
+    // 전체 팀의 (id, name)
+    protected void loadTeams(BiConsumer<Long, String> sink) {
+        primaryTransaction.executeWithoutResult(status -> new JPAQueryFactory(em)
+                .select(team.id, team.name)
+                .from(team)
+                .fetch()
+                .forEach(row -> sink.accept(row.get(team.id), row.get(team.name))));
+    }
+
+    // 전체 회원. team.id 는 외래 키 컬럼이므로 조인하지 않는다.
+    protected void loadMembers(Consumer<CachedMember> sink) {
+        primaryTransaction.executeWithoutResult(status -> {
+            try (Stream<Tuple> stream = new JPAQueryFactory(em)
+                    .select(member.id, member.username, member.age, member.team.id)
+                    .from(member)
+                    .setHint(QueryHints.FETCH_SIZE, properties.getLoadFetchSize())
+                    .setHint(QueryHints.READ_ONLY, true)
+                    .stream()) {
+                stream.forEach(row -> sink.accept(cachedMemberOf(row)));
+            }
+        });
+    }
+
+    protected List<CachedMember> reloadMembers(Collection<?> ids) {
+        List<Long> all = new ArrayList<>(ids.size());
+        ids.forEach(id -> all.add((Long) id));
+
+        List<CachedMember> reloaded = new ArrayList<>();
+        primaryTransaction.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            try (NPlusOneDetector.Suppression suppression = NPlusOneDetector.suppress()) {
+                for (int from = 0; from < all.size(); from += 1_000) {
+                    queryFactory
+                            .select(member.id, member.username, member.age, member.team.id)
+                            .from(member)
+                            .where(member.id.in(all.subList(from, Math.min(from + 1_000, all.size()))))
+                            .fetch()
+                            .forEach(row -> reloaded.add(cachedMemberOf(row)));
+                }
+            }
+        });
+        return reloaded;
+    }
+
+    private static CachedMember cachedMemberOf(Tuple row) {
+        Integer age = row.get(member.age);
+        return new CachedMember(row.get(member.id), row.get(member.username), age == null ? 0 : age, row.get(member.team.id));
+    }
+
+    private static CachedMember cachedMemberOf(Long id, Member entity) {
+        return new CachedMember(id, entity.getUsername(), entity.getAge(), teamIdOf(entity.getTeam()));
+    }
+
+    // 커밋 이후라 세션이 닫혀 있을 수 있으므로 프록시는 초기화하지 않고 id 만 읽는다.
+    private static Long teamIdOf(Team memberTeam) {
+        if (memberTeam == null) {
+            return null;
+        }
+        if (memberTeam instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) memberTeam).getHibernateLazyInitializer().getIdentifier();
+        }
+        return memberTeam.getId();
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    // ---- 조건 평가 ----
+
+    // TRUE, FALSE, null(unknown)
+    private static Boolean test(Expression<?> expression, CachedMember cachedMember, CachedTeam cachedTeam) {
+        if (expression instanceof Constant && ((Constant<?>) expression).getConstant() instanceof Boolean) {
+            return (Boolean) ((Constant<?>) expression).getConstant();
+        }
+        if (!(expression instanceof Operation)) {
+            throw new UnsupportedPredicateException(expression);
+        }
+        Operation<?> operation = (Operation<?>) expression;
+        Operator op = operation.getOperator();
+
+        if (op == Ops.AND || op == Ops.OR) {
+            Boolean left = test(operation.getArg(0), cachedMember, cachedTeam);
+            Boolean right = test(operation.getArg(1), cachedMember, cachedTeam);
+            Boolean decisive = op == Ops.AND ? Boolean.FALSE : Boolean.TRUE;
+            if (decisive.equals(left) || decisive.equals(right)) {
+                return decisive;
+            }
+            return left == null || right == null ? null : !decisive;
+        }
+        if (op == Ops.NOT) {
+            Boolean value = test(operation.getArg(0), cachedMember, cachedTeam);
+            return value == null ? null : !value;
+        }
+        if (op == Ops.IS_NULL || op == Ops.IS_NOT_NULL) {
+            boolean isNull = valueOf(operation.getArg(0), cachedMember, cachedTeam) == null;
+            return op == Ops.IS_NULL == isNull;
+        }
+
+        Object left = valueOf(operation.getArg(0), cachedMember, cachedTeam);
+        if (op == Ops.IN || op == Ops.NOT_IN) {
+            Object right = valueOf(operation.getArg(1), cachedMember, cachedTeam);
+            if (!(right instanceof Collection)) {
+                throw new UnsupportedPredicateException(expression);
+            }
+            if (left == null) {
+                return null;
+            }
+            boolean found = false;
+            for (Object candidate : (Collection<?>) right) {
+                if (candidate != null && compare(left, candidate, expression) == 0) {
+                    found = true;
+                    break;
+                }
+            }
+            return op == Ops.IN == found;
+        }
+        if (op == Ops.BETWEEN) {
+            Object from = valueOf(operation.getArg(1), cachedMember, cachedTeam);
+            Object to = valueOf(operation.getArg(2), cachedMember, cachedTeam);
+            if (left == null || from == null || to == null) {
+                return null;
+            }
+            return compare(left, from, expression) >= 0 && compare(left, to, expression) <= 0;
+        }
+
+        if (operation.getArgs().size() != 2) {
+            throw new UnsupportedPredicateException(expression);
+        }
+        Object right = valueOf(operation.getArg(1), cachedMember, cachedTeam);
+        if (left == null || right == null) {
+            return null;
+        }
+        if (op == Ops.EQ) {
+            return compare(left, right, expression) == 0;
+        } else if (op == Ops.NE) {
+            return compare(left, right, expression) != 0;
+        } else if (op == Ops.GOE) {
+            return compare(left, right, expression) >= 0;
+        } else if (op == Ops.GT) {
+            return compare(left, right, expression) > 0;
+        } else if (op == Ops.LOE) {
+            return compare(left, right, expression) <= 0;
+        } else if (op == Ops.LT) {
+            return compare(left, right, expression) < 0;
+        }
+
+        if (!(left instanceof String) || !(right instanceof String)) {
+            throw new UnsupportedPredicateException(expression);
+        }
+        String text = (String) left;
+        String part = (String) right;
+        if (op == Ops.EQ_IGNORE_CASE) {
+            return text.equalsIgnoreCase(part);
+        } else if (op == Ops.STARTS_WITH) {
+            return text.startsWith(part);
+        } else if (op == Ops.STARTS_WITH_IC) {
+            return lower(text).startsWith(lower(part));
+        } else if (op == Ops.ENDS_WITH) {
+            return text.endsWith(part);
+        } else if (op == Ops.ENDS_WITH_IC) {
+            return lower(text).endsWith(lower(part));
+        } else if (op == Ops.STRING_CONTAINS) {
+            return text.contains(part);
+        } else if (op == Ops.STRING_CONTAINS_IC) {
+            return lower(text).contains(lower(part));
+        }
+        throw new UnsupportedPredicateException(expression);
+    }
+
+    private static Object valueOf(Expression<?> expression, CachedMember cachedMember, CachedTeam cachedTeam) {
+        if (expression instanceof Constant) {
+            return ((Constant<?>) expression).getConstant();
+        }
+        if (expression.equals(member.id)) {
+            return cachedMember.id;
+        } else if (expression.equals(member.username)) {
+            return cachedMember.username;
+        } else if (expression.equals(member.age)) {
+            return cachedMember.age;
+        } else if (expression.equals(member.team.id) || expression.equals(team.id)) {
+            return cachedMember.teamId;
+        } else if (expression.equals(member.team.name) || expression.equals(team.name)) {
+            return cachedTeam == null ? null : cachedTeam.name;
+        }
+        if (expression instanceof Operation) {
+            Operation<?> operation = (Operation<?>) expression;
+            if (operation.getOperator() == Ops.LOWER || operation.getOperator() == Ops.UPPER) {
+                Object value = valueOf(operation.getArg(0), cachedMember, cachedTeam);
+                if (value == null) {
+                    return null;
+                }
+                return operation.getOperator() == Ops.LOWER
+                        ? lower((String) value) : ((String) value).toUpperCase(Locale.ROOT);
+            }
+        }
+        // 파라미터(Param), 서브쿼리, 다른 별칭의 경로 등
+        throw new UnsupportedPredicateException(expression);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object left, Object right, Expression<?> expression) {
+        if (left instanceof Number && right instanceof Number && left.getClass() != right.getClass()) {
+            return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+        }
+        if (left instanceof Comparable && left.getClass() == right.getClass()) {
+            return ((Comparable<Object>) left).compareTo(right);
+        }
+        throw new UnsupportedPredicateException(expression);
+    }
+
+    private static String lower(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static class UnsupportedPredicateException extends RuntimeException {
+        private UnsupportedPredicateException(Expression<?> expression) {
+            super(String.valueOf(expression), null, false, false);
+        }
+    }
+
+    // ---- 데이터, 보조 인덱스 ----
+
+    protected static class CachedMember {
+        private final Long id;
+        private final String username;
+        private final int age;
+        private final Long teamId;
+
+        protected CachedMember(Long id, String username, int age, Long teamId) {
+            this.id = id;
+            this.username = username;
+            this.age = age;
+            this.teamId = teamId;
+        }
+    }
+
+    private static class CachedTeam {
+        private final Long id;
+        private final String name;
+
+        private CachedTeam(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private static class Rows {
+
+        private final NavigableMap<Long, CachedMember> members = new TreeMap<>();
+        private final Map<Long, CachedTeam> teams = new HashMap<>();
+        private final Map<Long, Set<Long>> membersByTeam = new HashMap<>();
+        private final NavigableMap<Integer, Set<Long>> membersByAge = new TreeMap<>();
+        private final Map<String, Set<Long>> membersByUsername = new HashMap<>();
+        private final Map<String, Set<Long>> teamsByName = new HashMap<>();
+
+        private void putMember(CachedMember cachedMember) {
+            removeMember(cachedMember.id);
+            members.put(cachedMember.id, cachedMember);
+            if (cachedMember.teamId != null) {
+                add(membersByTeam, cachedMember.teamId, cachedMember.id);
+            }
+            add(membersByAge, cachedMember.age, cachedMember.id);
+            if (cachedMember.username != null) {
+                add(membersByUsername, cachedMember.username, cachedMember.id);
+            }
+        }
+
+        private void removeMember(Long id) {
+            CachedMember old = members.remove(id);
+            if (old == null) {
+                return;
+            }
+            if (old.teamId != null) {
+                remove(membersByTeam, old.teamId, id);
+            }
+            remove(membersByAge, old.age, id);
+            if (old.username != null) {
+                remove(membersByUsername, old.username, id);
+            }
+        }
+
+        // 팀 이름은 조회 시 teams 에서 읽으므로 이름이 바뀌어도 회원은 그대로 둔다.
+        private void putTeam(CachedTeam cachedTeam) {
+            removeTeam(cachedTeam.id);
+            teams.put(cachedTeam.id, cachedTeam);
+            if (cachedTeam.name != null) {
+                add(teamsByName, cachedTeam.name, cachedTeam.id);
+            }
+        }
+
+        private void removeTeam(Long id) {
+            CachedTeam old = teams.remove(id);
+            if (old != null && old.name != null) {
+                remove(teamsByName, old.name, id);
+            }
+        }
+
+        // 최상위 AND 조건 중 보조 인덱스로 가장 적은 후보를 주는 것을 사용한다. (id 순)
+        private Collection<Long> candidates(Predicate predicate) {
+            if (predicate == null) {
+                return members.keySet();
+            }
+            List<Expression<?>> conjuncts = new ArrayList<>();
+            flattenAnd(predicate, conjuncts);
+            Candidates best = null;
+            for (Expression<?> conjunct : conjuncts) {
+                Candidates indexed = indexed(conjunct);
+                if (indexed != null && (best == null || indexed.size < best.size)) {
+                    best = indexed;
+                }
+            }
+            return best == null || best.size >= members.size() ? members.keySet() : best.ids();
+        }
+
+        private Candidates indexed(Expression<?> conjunct) {
+            if (!(conjunct instanceof Operation)) {
+                return null;
+            }
+            Operation<?> operation = (Operation<?>) conjunct;
+            Operator op = operation.getOperator();
+            if (operation.getArgs().size() < 2 || !(operation.getArg(1) instanceof Constant)) {
+                return null;
+            }
+            Expression<?> path = operation.getArg(0);
+            Object value = ((Constant<?>) operation.getArg(1)).getConstant();
+
+            if (op == Ops.EQ) {
+                if (path.equals(member.id)) {
+                    return Candidates.of(value instanceof Long && members.containsKey(value) ? Collections.singleton((Long) value) : null);
+                } else if (path.equals(member.username)) {
+                    return Candidates.of(membersByUsername.get(value));
+                } else if (path.equals(member.team.id) || path.equals(team.id)) {
+                    return Candidates.of(membersByTeam.get(value));
+                } else if (path.equals(member.team.name) || path.equals(team.name)) {
+                    List<Set<Long>> sets = new ArrayList<>();
+                    teamsByName.getOrDefault(value, Collections.emptySet())
+                            .forEach(teamId -> sets.add(membersByTeam.getOrDefault(teamId, Collections.emptySet())));
+                    return Candidates.union(sets);
+                } else if (path.equals(member.age) && value instanceof Integer) {
+                    return Candidates.of(membersByAge.get(value));
+                }
+                return null;
+            }
+            if (op == Ops.IN && path.equals(member.id) && value instanceof Collection) {
+                Set<Long> ids = new HashSet<>();
+                for (Object id : (Collection<?>) value) {
+                    if (id instanceof Long && members.containsKey(id)) {
+                        ids.add((Long) id);
+                    }
+                }
+                return Candidates.of(ids);
+            }
+            if (path.equals(member.age) && value instanceof Integer) {
+                int age = (Integer) value;
+                if (op == Ops.GOE) {
+                    return Candidates.union(membersByAge.tailMap(age, true).values());
+                } else if (op == Ops.GT) {
+                    return Candidates.union(membersByAge.tailMap(age, false).values());
+                } else if (op == Ops.LOE) {
+                    return Candidates.union(membersByAge.headMap(age, true).values());
+                } else if (op == Ops.LT) {
+                    return Candidates.union(membersByAge.headMap(age, false).values());
+                } else if (op == Ops.BETWEEN && operation.getArg(2) instanceof Constant
+                        && ((Constant<?>) operation.getArg(2)).getConstant() instanceof Integer) {
+                    int to = (Integer) ((Constant<?>) operation.getArg(2)).getConstant();
+                    return age > to ? Candidates.of((Set<Long>) null)
+                            : Candidates.union(membersByAge.subMap(age, true, to, true).values());
+                }
+            }
+            return null;
+        }
+
+        private static void flattenAnd(Expression<?> expression, List<Expression<?>> conjuncts) {
+            if (expression instanceof Operation && ((Operation<?>) expression).getOperator() == Ops.AND) {
+                for (Expression<?> arg : ((Operation<?>) expression).getArgs()) {
+                    flattenAnd(arg, conjuncts);
+                }
+            } else {
+                conjuncts.add(expression);
+            }
+        }
+
+        private static <K> void add(Map<K, Set<Long>> index, K key, Long id) {
+            index.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+        }
+
+        private static <K> void remove(Map<K, Set<Long>> index, K key, Long id) {
+            Set<Long> ids = index.get(key);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    index.remove(key);
+                }
+            }
+        }
+    }
+
+    // 인덱스 후보. 크기만 먼저 계산하고 선택된 것만 id 순으로 모은다.
+    private static class Candidates {
+        private final int size;
+        private final Collection<? extends Collection<Long>> sets;
+
+        private Candidates(Collection<? extends Collection<Long>> sets) {
+            int total = 0;
+            for (Collection<Long> set : sets) {
+                total += set.size();
+            }
+            this.size = total;
+            this.sets = sets;
+        }
+
+        private static Candidates of(Collection<Long> ids) {
+            return new Candidates(ids == null ? Collections.emptyList() : Collections.singletonList(ids));
+        }
+
+        private static Candidates union(Collection<? extends Collection<Long>> sets) {
+            return new Candidates(sets);
+        }
+
+        private Collection<Long> ids() {
+            TreeSet<Long> ids = new TreeSet<>();
+            sets.forEach(ids::addAll);
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition.UsernameMatch;
+import study.querydsl.entity.Member;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 username 의 메모리 trigram 인덱스. PREFIX/CONTAINS 검색을
+ * 1) trigram 으로 후보 id 조회 2) 메모리에서 username 확인 3) DB 에서 id IN + LIKE 로 다시 확인 하는 방식으로 바꾼다.
+ * Member 커밋 이벤트로 갱신되며, 준비되지 않았거나 쓰기 트랜잭션 안(커밋되지 않은 변경)이면 LIKE 로 실행한다.
+ * 후보 id 로만 걸러내므로 인덱스에 빠진 회원은 검색되지 않는다. 그래서 주기적으로 DB 의 회원 수/max(id) 와 비교하고,
+ * 최근에 일치를 확인하지 못했으면 LIKE 로 실행한다. 이벤트로 알 수 없는 변경에 대비해서 주기적으로 다시 구성한다.
+ * 회원 수/max(id) 는 추가/삭제만 드러내므로, 이름 변경이 빠지지 않도록 재구성은 replica 가 아닌 primary 에서 읽는다.
+ * (이벤트 없이 바뀐 이름 - 직접 실행한 SQL, 다른 인스턴스 - 은 다음 재구성까지 검색되지 않을 수 있다.)
+ */
+@Slf4j
+@Component
+public class MemberUsernameIndex implements EntityChangeListener {
+
+    private static final int GRAM = 3;
+    // 접두사 검색용 시작 표시
+    private static final char START = '\u0002';
+
+    private final EntityManager em;
+    private final TransactionTemplate primaryTransaction;
+    private final UsernameIndexProperties properties;
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "username-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong drifts = new AtomicLong();
+
+    private volatile Postings postings = new Postings();
+    private volatile boolean ready;
+    // 마지막으로 DB 와 일치를 확인한 시각 (System.nanoTime). 다시 구성하면 초기화된다.
+    private volatile long verifiedAt;
+    private volatile boolean verified;
+    // 재구성 중에 들어온 이벤트. 새 인덱스로 교체한 뒤 다시 적용한다.
+    private volatile Queue<EntityChangeEvent> pending;
+
+    public MemberUsernameIndex(EntityManager em, PlatformTransactionManager transactionManager, UsernameIndexProperties properties) {
+        this.em = em;
+        // 전체 재구성과 커밋 직후 재조회는 primary 에서 새 트랜잭션으로 읽는다.
+        // replica 가 늦으면 재구성 시작 전에 적용된 이벤트(이름 변경 등)가 새 인덱스에서 빠지고, 회원 수/max(id) 비교로는 알 수 없다.
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.primaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = properties;
+    }
+
+    /**
+     * @return username 조건. 비어 있으면 null
+     */
+    public BooleanExpression usernameMatches(String username, UsernameMatch match) {
+        if (!hasText(username)) {
+            return null;
+        }
+        if (match == UsernameMatch.PREFIX) {
+            return indexed(member.username.startsWithIgnoreCase(username), candidates(username, UsernameMatch.PREFIX));
+        }
+        if (match == UsernameMatch.CONTAINS) {
+            return indexed(member.username.containsIgnoreCase(username), candidates(username, UsernameMatch.CONTAINS));
+        }
+        return member.username.eq(username);
+    }
+
+    private BooleanExpression indexed(BooleanExpression verify, List<Long> candidates) {
+        // 후보 id 로 행을 찾고 LIKE 로 한 번 더 확인 (인덱스가 늦게 반영된 경우 대비)
+        return candidates == null ? verify : member.id.in(candidates).and(verify);
+    }
+
+    /**
+     * @return 조건을 만족하는 회원 id. 인덱스를 사용할 수 없으면 null
+     */
+    public List<Long> candidates(String username, UsernameMatch match) {
+        if (!properties.isEnabled() || !ready || !isVerified() || inWriteTransaction()) {
+            return null;
+        }
+        String query = username.toLowerCase(Locale.ROOT);
+        List<String> grams = grams(match == UsernameMatch.PREFIX ? START + query : query);
+        if (grams.isEmpty()) {
+            return null; // 3글자 미만
+        }
+
+        Postings current = postings;
+        List<Set<Long>> sets = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Set<Long> ids = current.ids.get(gram);
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            sets.add(ids);
+        }
+        sets.sort(Comparator.comparingInt(Set::size));
+
+        List<Long> result = new ArrayList<>();
+        for (Long id : sets.get(0)) {
+            if (!containsAll(sets, id)) {
+                continue;
+            }
+            String candidate = current.usernames.get(id);
+            if (candidate != null && matches(candidate.toLowerCase(Locale.ROOT), query, match)) {
+                result.add(id);
+                if (result.size() > properties.getMaxCandidates()) {
+                    return null;
+                }
+            }
+        }
+        return result;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // 확인 주기의 두 배 안에 DB 와 일치를 확인했는지
+    public boolean isVerified() {
+        return verified && System.nanoTime() - verifiedAt < properties.getFreshnessCheckInterval().toNanos() * 2;
+    }
+
+    public long getDrifts() {
+        return drifts.get();
+    }
+
+    @Override
+    public void onEntityChange(EntityChangeEvent event) {
+        if (!event.isAbout(Member.class)) {
+            return;
+        }
+        if (event.getType() == EntityChangeEvent.Type.BULK) {
+            onBulkChange(event);
+            return;
+        }
+        Queue<EntityChangeEvent> rebuilding = pending;
+        if (rebuilding != null) {
+            rebuilding.add(event);
+        }
+        apply(postings, event);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long check = properties.getFreshnessCheckInterval().toMillis();
+        long rebuild = properties.getRebuildInterval().toMillis();
+        rebuilder.execute(this::rebuild);
+        rebuilder.scheduleWithFixedDelay(this::checkFreshness, check, check, TimeUnit.MILLISECONDS);
+        rebuilder.scheduleWithFixedDelay(this::rebuild, rebuild, rebuild, TimeUnit.MILLISECONDS);
+    }
+
+    // 벌크 변경은 커밋된 뒤에만 반영한다. 재구성과 같은 쓰레드에서 실행하므로 재구성이 끝난 인덱스에 적용된다.
+    private void onBulkChange(EntityChangeEvent event) {
+        if (!event.isCommitted()) {
+            return;
+        }
+        if (event.getIds() == null) {
+            // 변경 범위를 모르면 전체 재구성
+            rebuildAsync();
+        } else if (properties.isEnabled()) {
+            submitReload(() -> reload(event.getIds()));
+        }
+    }
+
+    // 테스트에서 실행 시점을 제어할 수 있도록 분리
+    protected void submitReload(Runnable task) {
+        rebuilder.execute(task);
+    }
+
+    public void rebuildAsync() {
+        if (properties.isEnabled()) {
+            rebuilder.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * DB 의 회원 수가 인덱스와 같고 max(id) 가 인덱스가 반영한 가장 큰 id 이하이면 최신으로 본다.
+     * 다르면 LIKE 로 전환하고 다시 구성한다. 비교 중에 인덱스가 바뀌었으면 판단하지 않고 다음 확인을 기다린다.
+     * @return 다르면 false
+     */
+    public boolean checkFreshness() {
+        if (!ready) {
+            return true;
+        }
+        try {
+            Postings current = postings;
+            long changes = current.changes.get();
+            long count = current.count();
+            long maxId = current.maxId.get();
+            Watermark actual = queryWatermark();
+            if (current != postings || current.changes.get() != changes) {
+                return true;
+            }
+            if (actual.count == count && actual.maxId <= maxId) {
+                verifiedAt = System.nanoTime();
+                verified = true;
+                return true;
+            }
+            verified = false;
+            drifts.incrementAndGet();
+            log.warn("username index is behind the database, rebuilding (index count={}, maxId={}, database count={}, maxId={})",
+                    count, maxId, actual.count, actual.maxId);
+            rebuildAsync();
+            return false;
+        } catch (RuntimeException e) {
+            log.warn("username index freshness check failed", e);
+            return true;
+        }
+    }
+
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        pending = new ConcurrentLinkedQueue<>();
+        Postings rebuilt = new Postings();
+        try {
+            loadAll(rebuilt::put);
+
+            postings = rebuilt;
+            Queue<EntityChangeEvent> events = pending;
+            pending = null;
+            for (EntityChangeEvent event : events) {
+                apply(rebuilt, event);
+            }
+            // 재구성 중에 이벤트 없이 바뀐 행이 있을 수 있으므로 다음 확인에서 일치해야 사용한다.
+            verified = false;
+            ready = true;
+            log.info("username index rebuilt: {} members in {} ms", rebuilt.usernames.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            pending = null;
+            log.warn("username index rebuild failed", e);
+        }
+    }
+
+    // 전체 회원의 (id, username) 을 읽는다.
+    protected void loadAll(BiConsumer<Long, String> sink) {
+        primaryTransaction.executeWithoutResult(status -> {
+            try (Stream<Tuple> rows = new JPAQueryFactory(em)
+                    .select(member.id, member.username)
+                    .from(member)
+                    .setHint(QueryHints.FETCH_SIZE, properties.getRebuildFetchSize())
+                    .setHint(QueryHints.READ_ONLY, true)
+                    .stream()) {
+                rows.forEach(row -> sink.accept(row.get(member.id), row.get(member.username)));
+            }
+        });
+    }
+
+    // 커밋 이벤트로 갱신되는 인덱스와 비교하므로 primary 에서 읽는다.
+    protected Watermark queryWatermark() {
+        Tuple row = primaryTransaction.execute(status -> new JPAQueryFactory(em)
+                .select(member.count(), member.id.max())
+                .from(member)
+                .fetchOne());
+        Long maxId = row.get(member.id.max());
+        return new Watermark(row.get(member.count()), maxId == null ? 0 : maxId);
+    }
+
+    private void apply(Postings target, EntityChangeEvent event) {
+        switch (event.getType()) {
+            case INSERT:
+            case UPDATE:
+                target.put((Long) event.getId(), ((Member) event.getEntity()).getUsername());
+                break;
+            case DELETE:
+                target.remove((Long) event.getId());
+                break;
+        }
+    }
+
+    // 벌크 연산 대상 id 는 DB 에서 다시 읽는다. (삭제된 id 는 제거) 실패하면 LIKE 로 전환하고 다시 구성한다.
+    private void reload(Collection<?> ids) {
+        Postings target = postings;
+        try (NPlusOneDetector.Suppression suppression = NPlusOneDetector.suppress()) {
+            List<Long> chunk = new ArrayList<>();
+            for (Object id : ids) {
+                chunk.add((Long) id);
+                if (chunk.size() == 1_000) {
+                    reloadChunk(target, chunk);
+                    chunk = new ArrayList<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                reloadChunk(target, chunk);
+            }
+        } catch (RuntimeException e) {
+            verified = false;
+            log.warn("username index bulk reload failed, rebuilding", e);
+            rebuildAsync();
+        }
+    }
+
+    private void reloadChunk(Postings target, List<Long> ids) {
+        Map<Long, String> rows = reloadMembers(ids);
+        ids.forEach(target::remove);
+        rows.forEach(target::put);
+    }
+
+    // 커밋 직후이므로 replica 지연이 없는 primary 에서 읽는다.
+    protected Map<Long, String> reloadMembers(List<Long> ids) {
+        List<Tuple> rows = primaryTransaction.execute(status -> new JPAQueryFactory(em)
+                .select(member.id, member.username)
+                .from(member)
+                .where(member.id.in(ids))
+                .fetch());
+        Map<Long, String> reloaded = new HashMap<>();
+        rows.forEach(row -> reloaded.put(row.get(member.id), row.get(member.username)));
+        return reloaded;
+    }
+
+    private static boolean containsAll(List<Set<Long>> sets, Long id) {
+        for (int i = 1; i < sets.size(); i++) {
+            if (!sets.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String username, String query, UsernameMatch match) {
+        return match == UsernameMatch.PREFIX ? username.startsWith(query) : username.contains(query);
+    }
+
+    private static List<String> grams(String text) {
+        List<String> grams = new ArrayList<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    protected static class Watermark {
+        private final long count;
+        private final long maxId;
+
+        protected Watermark(long count, long maxId) {
+            this.count = count;
+            this.maxId = maxId;
+        }
+    }
+
+    // trigram -> 회원 id, 회원 id -> username
+    private static class Postings {
+
+        private final Map<String, Set<Long>> ids = new ConcurrentHashMap<>();
+        private final Map<Long, String> usernames = new ConcurrentHashMap<>();
+        // username 이 없는 회원 (회원 수 비교용)
+        private final Set<Long> withoutUsername = ConcurrentHashMap.newKeySet();
+        private final AtomicLong maxId = new AtomicLong();
+        private final AtomicLong changes = new AtomicLong();
+
+        private long count() {
+            return usernames.size() + withoutUsername.size();
+        }
+
+        private void put(Long id, String username) {
+            remove(id);
+            maxId.accumulateAndGet(id, Math::max);
+            if (username == null) {
+                withoutUsername.add(id);
+                return;
+            }
+            usernames.put(id, username);
+            for (String gram : grams(START + username.toLowerCase(Locale.ROOT))) {
+                ids.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        }
+
+        private void remove(Long id) {
+            changes.incrementAndGet();
+            withoutUsername.remove(id);
+            String old = usernames.remove(id);
+            if (old == null) {
+                return;
+            }
+            for (String gram : grams(START + old.toLowerCase(Locale.ROOT))) {
+                Set<Long> set = ids.get(gram);
+                if (set != null) {
+                    set.remove(id);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package study.querydsl.repository.support;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * N+1 쿼리 탐지기. Hibernate 가 실행하는 모든 SQL 을 HTTP 요청(open) 또는 트랜잭션 단위로 세고,
+ * 리터럴을 제거한 같은 형태(fingerprint)의 select 가 threshold 번 실행되면 원인 위치와 함께 로그를 남기거나 예외를 던진다.
+ * IN 목록을 청크로 나눠 반복 조회하는 것처럼 의도적으로 같은 select 를 반복하는 구간은 suppress() 로 제외한다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NPlusOneDetector implements StatementInspector {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> SUPPRESSED = new ThreadLocal<>();
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final NPlusOneProperties properties;
+
+    @Override
+    public String inspect(String sql) {
+        if (properties.isEnabled()) {
+            Scope scope = currentScope();
+            if (scope != null) {
+                scope.record(sql);
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * 현재 쓰레드에 탐지 범위를 연다. 이미 열려 있으면 바깥 범위를 그대로 사용한다.
+     */
+    public Scope open(String name) {
+        Scope current = CURRENT.get();
+        if (current != null) {
+            return Scope.NESTED;
+        }
+        Scope scope = new Scope(name, properties);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * 닫을 때까지 현재 쓰레드에서 실행되는 select 를 N+1 로 세지 않는다. (실행한 SQL 수는 센다.)
+     * 구간 안의 지연 로딩도 제외되므로 청크 조회 반복문만 감싼다.
+     */
+    public static Suppression suppress() {
+        if (SUPPRESSED.get() != null) {
+            return () -> {
+            };
+        }
+        SUPPRESSED.set(Boolean.TRUE);
+        return SUPPRESSED::remove;
+    }
+
+    // HTTP 요청 범위가 없으면 트랜잭션 범위를 사용한다.
+    private Scope currentScope() {
+        Scope scope = CURRENT.get();
+        if (scope != null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return scope;
+        }
+        scope = (Scope) TransactionSynchronizationManager.getResource(this);
+        if (scope == null) {
+            Scope transactionScope = new Scope(String.valueOf(TransactionSynchronizationManager.getCurrentTransactionName()), properties);
+            TransactionSynchronizationManager.bindResource(this, transactionScope);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(NPlusOneDetector.this);
+                    transactionScope.summary();
+                }
+            });
+            scope = transactionScope;
+        }
+        return scope;
+    }
+
+    static String fingerprint(String sql) {
+        String normalized = COMMENT.matcher(sql).replaceAll(" ");
+        normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+        return IN_LIST.matcher(normalized).replaceAll("in (...)");
+    }
+
+    public static class Scope implements AutoCloseable {
+
+        private static final Scope NESTED = new Scope(null, null);
+
+        private final String name;
+        private final NPlusOneProperties properties;
+        private final Map<String, Integer> selects = new HashMap<>();
+        private int statements;
+
+        private Scope(String name, NPlusOneProperties properties) {
+            this.name = name;
+            this.properties = properties;
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+
+        private void record(String sql) {
+            statements++;
+            if (SUPPRESSED.get() != null) {
+                return;
+            }
+            String fingerprint = fingerprint(sql);
+            if (!fingerprint.startsWith("select")) {
+                return;
+            }
+            // 같은 fingerprint 는 threshold 에 도달했을 때 한 번만 보고한다.
+            if (selects.merge(fingerprint, 1, Integer::sum) == properties.getThreshold()) {
+                report(fingerprint);
+            }
+        }
+
+        private void report(String fingerprint) {
+            List<StackTraceElement> frames = StackWalker.getInstance().walk(stream -> stream
+                    .map(StackWalker.StackFrame::toStackTraceElement)
+                    .filter(frame -> frame.getClassName().startsWith(properties.getBasePackage()))
+                    .filter(frame -> !isDetectorFrame(frame.getClassName()))
+                    .filter(frame -> !frame.getClassName().contains("$$"))
+                    .collect(Collectors.toList()));
+            String origin = frames.isEmpty() ? "unknown" : frames.get(0).toString();
+            String stack = frames.stream().map(frame -> "\tat " + frame).collect(Collectors.joining("\n"));
+            String message = String.format("N+1 의심: 같은 형태의 select 가 %d번 실행됨 (scope=%s, origin=%s)%nsql: %s%n%s",
+                    properties.getThreshold(), name, origin, fingerprint, stack);
+
+            if (properties.getAction() == NPlusOneProperties.Action.EXCEPTION) {
+                throw new NPlusOneException(message);
+            }
+            log.warn(message);
+        }
+
+        private static boolean isDetectorFrame(String className) {
+            String detector = NPlusOneDetector.class.getName();
+            return className.equals(detector) || className.startsWith(detector + "$");
+        }
+
+        private void summary() {
+            log.debug("{}: {} statements", name, statements);
+        }
+
+        @Override
+        public void close() {
+            if (this != NESTED) {
+                CURRENT.remove();
+                summary();
+            }
+        }
+    }
+
+    public interface Suppression extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    public static class NPlusOneException extends RuntimeException {
+
+        public NPlusOneException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.n-plus-one")
+public class NPlusOneProperties {
+
+    private boolean enabled = true;
+    // 한 요청/트랜잭션 안에서 같은 형태의 select 가 이 횟수만큼 실행되면 N+1 로 본다.
+    private int threshold = 5;
+    private Action action = Action.LOG;
+    // 원인 위치(stack)로 보여줄 애플리케이션 패키지
+    private String basePackage = "study.querydsl";
+
+    public enum Action {
+        LOG,
+        EXCEPTION
+    }
+}
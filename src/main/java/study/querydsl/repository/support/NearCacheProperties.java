@@ -0,0 +1,20 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.near-cache")
+public class NearCacheProperties {
+
+    // true 면 기동 후 Member/Team 전체를 메모리에 올리고 search 조건을 메모리에서 평가한다.
+    private boolean enabled = false;
+    // 회원 수가 이보다 많으면 적재하지 않는다. (항상 SQL)
+    private int maxMembers = 1_000_000;
+    private int loadFetchSize = 1_000;
+    // 커밋 이벤트로 알 수 없는 변경(직접 실행한 SQL, 다른 인스턴스)에 대비한 전체 다시 적재 주기
+    private Duration reloadInterval = Duration.ofMinutes(10);
+}
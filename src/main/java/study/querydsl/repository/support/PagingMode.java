@@ -0,0 +1,8 @@
+package study.querydsl.repository.support;
+
+public enum PagingMode {
+    // 조회 쿼리에 바로 offset/limit 적용
+    OFFSET,
+    // id 만 먼저 offset/limit 조회한 뒤 그 id 들로 전체 컬럼 조회 (DeferredJoin)
+    DEFERRED_JOIN
+}
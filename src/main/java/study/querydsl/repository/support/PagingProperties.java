@@ -0,0 +1,27 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.paging")
+public class PagingProperties {
+
+    // 요청 offset 이 이 값을 넘으면 offset 스캔 대신 keyset(seek) 방식으로 전환한다.
+    private long keysetOffsetThreshold = 1_000;
+
+    // searchPagingComplex 요청 offset 이 이 값 이상이면 id 만 먼저 페이징하는 deferred join 으로 조회한다. (0 이하면 사용 안 함)
+    private long deferredJoinOffsetThreshold = 100;
+
+    // Querydsl4RepositorySupport.applyPagination 의 기본 count 실행 방식
+    private CountExecution countExecution = CountExecution.SEQUENTIAL;
+    private int parallelCountThreads = 4;
+    private int parallelCountQueueCapacity = 100;
+    private Duration queryTimeout = Duration.ofSeconds(5);
+
+    // 추정 전체 수가 이 값 이상이면 count 쿼리 대신 추정값을 사용한다. (0 이하면 항상 정확한 count)
+    private long approximateCountThreshold = 100_000;
+}
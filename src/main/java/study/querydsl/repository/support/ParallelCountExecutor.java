@@ -0,0 +1,137 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * count 쿼리를 별도 쓰레드의 읽기 전용 트랜잭션(커넥션)에서 실행하는 bounded executor.
+ * 스프링 트랜잭션으로 실행하므로 읽기/쓰기 분리 시 replica 로 라우팅된다.
+ */
+@Slf4j
+@Component
+public class ParallelCountExecutor {
+
+    public static final String QUERY_TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTransaction;
+    private final PagingProperties properties;
+    private final ThreadPoolExecutor executor;
+
+    public ParallelCountExecutor(EntityManager em, PlatformTransactionManager transactionManager,
+                                 PagingProperties properties) {
+        this.em = em;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                properties.getParallelCountThreads(), properties.getParallelCountThreads(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getParallelCountQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "count-query-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public CountExecution getDefaultExecution() {
+        return properties.getCountExecution();
+    }
+
+    public long getQueryTimeoutMillis() {
+        return properties.getQueryTimeout().toMillis();
+    }
+
+    /**
+     * @return 실행이 불가능하면(쓰기 트랜잭션 안이거나 큐가 가득 참) null. 호출 측에서 순차 실행한다.
+     */
+    public Future<Long> submit(Function<JPAQueryFactory, JPAQuery> countQuery) {
+        return submit(countQuery, UnaryOperator.identity());
+    }
+
+    /**
+     * @param decorator 별도 쓰레드에서 실행되는 count 쿼리 자체를 감싼다. (메트릭 측정 등)
+     */
+    public Future<Long> submit(Function<JPAQueryFactory, JPAQuery> countQuery, UnaryOperator<LongSupplier> decorator) {
+        return submitCount(em -> countQuery.apply(new JPAQueryFactory(em)), decorator);
+    }
+
+    /**
+     * content 쿼리를 별도 EntityManager 에서 만들고 countQueryStrategy 로 count 쿼리를 만들어 실행한다.
+     */
+    public Future<Long> submitDerived(Function<JPAQueryFactory, JPAQuery> contentQuery, CountQueryStrategy countQueryStrategy,
+                                      UnaryOperator<LongSupplier> decorator) {
+        return submitCount(em -> countQueryStrategy.countQuery(contentQuery.apply(new JPAQueryFactory(em)), em), decorator);
+    }
+
+    private Future<Long> submitCount(Function<EntityManager, JPAQuery<?>> countQuery, UnaryOperator<LongSupplier> decorator) {
+        // 별도 커넥션에서는 현재 트랜잭션의 커밋되지 않은 변경이 보이지 않는다.
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        try {
+            return executor.submit(() -> count(countQuery, decorator));
+        } catch (RejectedExecutionException e) {
+            log.debug("count executor saturated, falling back to sequential count");
+            return null;
+        }
+    }
+
+    public long await(Future<Long> future) {
+        try {
+            return future.get(getQueryTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new QueryTimeoutException("count query timed out", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("interrupted while waiting for count query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // 공유 EntityManager 는 이 쓰레드의 트랜잭션에 묶인 EntityManager 를 사용한다.
+    private long count(Function<EntityManager, JPAQuery<?>> countQuery, UnaryOperator<LongSupplier> decorator) {
+        Long count = readOnlyTransaction.execute(status -> {
+            JPAQuery<?> query = countQuery.apply(em);
+            query.setHint(QUERY_TIMEOUT_HINT, getQueryTimeoutMillis());
+            return decorator.apply(query::fetchCount).getAsLong();
+        });
+        return count == null ? 0 : count;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
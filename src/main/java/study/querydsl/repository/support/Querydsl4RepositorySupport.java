@@ -3,30 +3,48 @@ package study.querydsl.repository.support;
 
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.core.types.dsl.SimpleExpression;
+import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.Querydsl;
 import org.springframework.data.querydsl.SimpleEntityPathResolver;
-import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.util.Assert;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
+import javax.persistence.metamodel.SingularAttribute;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 public class Querydsl4RepositorySupport {
 
     private final Class domainClass;
     private Querydsl querydsl;
+    private SimpleExpression<?> idPath;
+    private String idName;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private CountCache countCache;
+    private ParallelCountExecutor parallelCountExecutor;
+    private RepositoryMetrics repositoryMetrics;
+    private PagingProperties pagingProperties;
+    private CountQueryStrategy countQueryStrategy = new DerivedCountQueryStrategy();
 
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
@@ -40,10 +58,39 @@ public class Querydsl4RepositorySupport {
         SimpleEntityPathResolver resolver = SimpleEntityPathResolver.INSTANCE;
         EntityPath path = resolver.createPath(entityInformation.getJavaType());
         this.entityManager = entityManager;
-        this.querydsl = new Querydsl(entityManager, new PathBuilder<>(path.getType(), path.getMetadata()));
+        PathBuilder<?> builder = new PathBuilder<>(path.getType(), path.getMetadata());
+        SingularAttribute<?, ?> idAttribute = entityInformation.getIdAttribute();
+        this.querydsl = new Querydsl(entityManager, builder);
+        this.idPath = builder.get(idAttribute.getName(), idAttribute.getJavaType());
+        this.idName = idAttribute.getName();
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
 
+    @Autowired(required = false)
+    public void setCountCache(CountCache countCache) {
+        this.countCache = countCache;
+    }
+
+    @Autowired(required = false)
+    public void setParallelCountExecutor(ParallelCountExecutor parallelCountExecutor) {
+        this.parallelCountExecutor = parallelCountExecutor;
+    }
+
+    @Autowired(required = false)
+    public void setRepositoryMetrics(RepositoryMetrics repositoryMetrics) {
+        this.repositoryMetrics = repositoryMetrics;
+    }
+
+    @Autowired(required = false)
+    public void setPagingProperties(PagingProperties pagingProperties) {
+        this.pagingProperties = pagingProperties;
+    }
+
+    @Autowired(required = false)
+    public void setCountQueryStrategy(CountQueryStrategy countQueryStrategy) {
+        this.countQueryStrategy = countQueryStrategy;
+    }
+
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
@@ -67,16 +114,151 @@ public class Querydsl4RepositorySupport {
         return getQueryFactory().selectFrom(from);
     }
     protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery) {
-        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable, jpaQuery).fetch();
-        return PageableExecutionUtils.getPage(content, pageable, jpaQuery::fetchCount);
+        return applyPagination(pageable, contentQuery, PagingMode.OFFSET);
+    }
+
+    // count 쿼리는 content 쿼리에서 유도한다. (CountQueryStrategy)
+    protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                          PagingMode pagingMode) {
+        return applyPagination(pageable, contentQuery, null, null, defaultCountExecution(), null, pagingMode);
     }
 
     protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
                                           Function<JPAQueryFactory, JPAQuery> countQuery) {
-        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch();
-        JPAQuery countResult = countQuery.apply(getQueryFactory());
-        return PageableExecutionUtils.getPage(content, pageable, countResult::fetchCount);
+        return applyPagination(pageable, contentQuery, countQuery, null, defaultCountExecution());
+    }
+
+    protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                          Function<JPAQueryFactory, JPAQuery> countQuery, CountExecution countExecution) {
+        return applyPagination(pageable, contentQuery, countQuery, null, countExecution);
+    }
+
+    protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                          Function<JPAQueryFactory, JPAQuery> countQuery, PagingMode pagingMode) {
+        return applyPagination(pageable, contentQuery, countQuery, null, defaultCountExecution(), null, pagingMode);
+    }
+
+    // countCacheKey 가 같은 요청은 count 쿼리 결과를 재사용한다.
+    protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                          Function<JPAQueryFactory, JPAQuery> countQuery, Object countCacheKey) {
+        return applyPagination(pageable, contentQuery, countQuery, countCacheKey, defaultCountExecution());
+    }
+
+    // 추정 전체 수가 querydsl.paging.approximate-count-threshold 이상이면 count 쿼리를 실행하지 않는다. (ApproximatePage)
+    protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                          Function<JPAQueryFactory, JPAQuery> countQuery, Object countCacheKey,
+                                          CountEstimator countEstimator) {
+        return applyPagination(pageable, contentQuery, countQuery, countCacheKey, defaultCountExecution(), countEstimator);
+    }
+
+    protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                          Function<JPAQueryFactory, JPAQuery> countQuery, Object countCacheKey,
+                                          CountExecution countExecution) {
+        return applyPagination(pageable, contentQuery, countQuery, countCacheKey, countExecution, null);
+    }
+
+    protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                          Function<JPAQueryFactory, JPAQuery> countQuery, Object countCacheKey,
+                                          CountExecution countExecution, CountEstimator countEstimator) {
+        return applyPagination(pageable, contentQuery, countQuery, countCacheKey, countExecution, countEstimator, PagingMode.OFFSET);
+    }
+
+    /**
+     * PARALLEL 이면 count 를 별도 읽기 전용 커넥션에서 content 조회와 동시에 실행한다.
+     * 캐시된 count 가 있거나 쓰기 트랜잭션 안이면 순차 실행과 같다.
+     * countEstimator 의 추정값이 기준 이상이면 count 를 실행하지 않고 추정값을 전체 수로 사용한다.
+     * DEFERRED_JOIN 이면 id 만 먼저 페이징하고 해당 페이지 행만 전체 컬럼을 조회한다. (깊은 offset 용)
+     * countQuery 가 null 이면 CountQueryStrategy 로 content 쿼리에서 count 쿼리를 유도한다.
+     */
+    protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                          Function<JPAQueryFactory, JPAQuery> countQuery, Object countCacheKey,
+                                          CountExecution countExecution, CountEstimator countEstimator,
+                                          PagingMode pagingMode) {
+        OptionalLong estimate = countEstimator == null ? OptionalLong.empty() : countEstimator.estimate();
+        long threshold = pagingProperties == null ? 0 : pagingProperties.getApproximateCountThreshold();
+        boolean approximate = threshold > 0 && estimate.isPresent() && estimate.getAsLong() >= threshold;
+
+        boolean cached = countCacheKey != null && countCache != null && countCache.contains(countCacheKey);
+        Future<Long> countFuture = null;
+        if (countExecution == CountExecution.PARALLEL && parallelCountExecutor != null && !cached && !approximate) {
+            // 측정 태그는 호출 쓰레드에서 정해야 하므로 미리 만들어 넘긴다.
+            UnaryOperator<LongSupplier> decorator = repositoryMetrics == null ? UnaryOperator.identity() : repositoryMetrics.countTimer();
+            countFuture = countQuery == null
+                    ? parallelCountExecutor.submitDerived(contentQuery, countQueryStrategy, decorator)
+                    : parallelCountExecutor.submit(countQuery, decorator);
+        }
+
+        try {
+            JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+            if (countFuture != null) {
+                jpaContentQuery.setHint(ParallelCountExecutor.QUERY_TIMEOUT_HINT, parallelCountExecutor.getQueryTimeoutMillis());
+            }
+            List<T> content = fetchPage(pageable, jpaContentQuery, pagingMode);
+
+            LongSupplier total;
+            if (countFuture != null) {
+                Future<Long> future = countFuture;
+                total = () -> parallelCountExecutor.await(future);
+            } else {
+                JPAQuery<?> countResult = countQuery == null
+                        ? countQueryStrategy.countQuery(jpaContentQuery, getEntityManager())
+                        : countQuery.apply(getQueryFactory());
+                total = timeCount(countResult::fetchCount);
+            }
+            if (countCacheKey != null && countCache != null) {
+                total = countCache.supplier(countCacheKey, total);
+            }
+            return ApproximatePage.getPage(content, pageable, total, estimate, threshold);
+        } finally {
+            // count 가 필요 없었던 경우(마지막 페이지 등) 실행 중인 count 를 취소
+            if (countFuture != null) {
+                countFuture.cancel(true);
+            }
+        }
+    }
+
+    // count 쿼리 없이 pageSize + 1 건을 조회해서 hasNext 를 판단한다.
+    // 정렬 값이 같은 행의 순서가 페이지마다 달라지지 않도록 id 를 마지막 정렬 기준으로 붙인다.
+    @SuppressWarnings("unchecked")
+    protected <T> Slice<T> applySlicing(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(fetchContent((JPQLQuery<T>) jpaQuery), pageable, false);
+        }
+        int size = pageable.getPageSize();
+        JPQLQuery<T> sliceQuery = getQuerydsl().applyPagination(pageable, jpaQuery);
+        if (pageable.getSort().getOrderFor(idName) == null) {
+            sliceQuery.orderBy(new OrderSpecifier(Order.ASC, idPath));
+        }
+        List<T> rows = fetchContent(sliceQuery.limit(size + 1));
+
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    private <T> List<T> fetchPage(Pageable pageable, JPAQuery<T> contentQuery, PagingMode pagingMode) {
+        if (pagingMode == PagingMode.DEFERRED_JOIN && pageable.isPaged()) {
+            return fetchContent(() -> DeferredJoin.fetch(contentQuery, entityManager, idPath,
+                    query -> getQuerydsl().applyPagination(pageable, query)));
+        }
+        return fetchContent(getQuerydsl().applyPagination(pageable, contentQuery));
+    }
+
+    // RepositoryMetrics 가 있으면 content/count 단계를 따로 측정한다.
+    private <T> List<T> fetchContent(JPQLQuery<T> contentQuery) {
+        return fetchContent(contentQuery::fetch);
+    }
+
+    private <T> List<T> fetchContent(Supplier<List<T>> contentQuery) {
+        return repositoryMetrics == null ? contentQuery.get() : repositoryMetrics.content(contentQuery);
+    }
+
+    private LongSupplier timeCount(LongSupplier countQuery) {
+        return repositoryMetrics == null ? countQuery : repositoryMetrics.count(countQuery);
+    }
+
+    private CountExecution defaultCountExecution() {
+        return parallelCountExecutor == null ? CountExecution.SEQUENTIAL : parallelCountExecutor.getDefaultExecution();
     }
 }
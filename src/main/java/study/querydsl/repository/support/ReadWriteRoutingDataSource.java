@@ -0,0 +1,64 @@
+package study.querydsl.repository.support;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 읽기 전용 트랜잭션은 정상인 replica 로, 그 외는 primary 로 보낸다.
+ * 같은 HTTP 요청에서 쓰기 트랜잭션이 한 번이라도 있었으면 이후 읽기도 primary 로 보내서 방금 쓴 데이터를 읽을 수 있게 한다.
+ * 트랜잭션의 readOnly 여부가 정해진 뒤 커넥션을 가져오도록 LazyConnectionDataSourceProxy 로 감싸서 사용해야 한다.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private static final String WRITTEN_ATTRIBUTE = ReadWriteRoutingDataSource.class.getName() + ".WRITTEN";
+
+    private final ReplicaPool replicaPool;
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaPool replicaPool) {
+        this.replicaPool = replicaPool;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (ReplicaPool.Replica replica : replicaPool.getReplicas()) {
+            targets.put(replica.getName(), replica.getDataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (!writtenInRequest()) {
+                ReplicaPool.Replica replica = replicaPool.next();
+                if (replica != null) {
+                    return replica.getName();
+                }
+            }
+        } else if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            markWritten();
+        }
+        return PRIMARY;
+    }
+
+    private static boolean writtenInRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null && attributes.getAttribute(WRITTEN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+
+    private static void markWritten() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(WRITTEN_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+}
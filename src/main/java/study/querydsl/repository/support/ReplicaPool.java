@@ -0,0 +1,128 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 읽기 전용 replica 목록. 주기적으로 연결 상태와 복제 지연을 확인하고,
+ * 정상인 replica 중 하나를 round-robin 으로 고른다.
+ */
+@Slf4j
+public class ReplicaPool implements AutoCloseable {
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final RoutingDataSourceProperties properties;
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+
+    public ReplicaPool(Map<String, DataSource> replicas, RoutingDataSourceProperties properties) {
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.properties = properties;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        long interval = properties.getHealthCheckInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::check, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public List<Replica> getReplicas() {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    /**
+     * @return 정상인 replica 가 없으면 null (primary 사용)
+     */
+    public Replica next() {
+        int size = replicas.size();
+        int start = sequence.getAndIncrement();
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, size));
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    public void check() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            Duration lag = null;
+            try {
+                lag = probe(replica.dataSource);
+                healthy = lag != null && lag.compareTo(properties.getMaxLag()) <= 0;
+            } catch (SQLException | RuntimeException e) {
+                log.debug("replica {} health check failed", replica.name, e);
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                log.warn("replica {} is now {} (lag={})", replica.name, healthy ? "UP" : "DOWN", lag);
+            }
+            replica.lag = lag;
+            replica.healthy = healthy;
+        }
+    }
+
+    // 복제 지연. 연결이 유효하지 않거나 지연을 알 수 없으면 null
+    private Duration probe(DataSource dataSource) throws SQLException {
+        int timeoutSeconds = (int) Math.max(1, properties.getHealthCheckTimeout().getSeconds());
+        try (Connection connection = dataSource.getConnection()) {
+            if (!connection.isValid(timeoutSeconds)) {
+                return null;
+            }
+            if (properties.getLagQuery() == null) {
+                return Duration.ZERO;
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(timeoutSeconds);
+                try (ResultSet rs = statement.executeQuery(properties.getLagQuery())) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    double seconds = rs.getDouble(1);
+                    return rs.wasNull() ? null : Duration.ofMillis((long) (seconds * 1000));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    @Getter
+    public static class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        // 첫 health check 전에는 사용하지 않는다.
+        private volatile boolean healthy;
+        private volatile Duration lag;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
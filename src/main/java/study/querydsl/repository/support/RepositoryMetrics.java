@@ -0,0 +1,135 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 리포지토리 메서드 메트릭.
+ * querydsl.repository: 지연시간 (phase=total|content|count), querydsl.repository.rows: 결과 행 수.
+ * 모두 method, shape(검색 조건 형태) 태그를 가진다. content/count 는 현재 실행 중인 리포지토리 메서드의 태그를 사용한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class RepositoryMetrics {
+
+    public static final String TIMER = "querydsl.repository";
+    public static final String ROWS = "querydsl.repository.rows";
+    public static final String NO_CONDITION = "n/a";
+
+    private static final ThreadLocal<Invocation> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+
+    /**
+     * 리포지토리 메서드 전체를 측정한다. 실행 중에는 content/count 측정에 method, shape 가 전달된다.
+     */
+    public <T> T record(String method, String shape, Supplier<T> invocation) {
+        Invocation previous = CURRENT.get();
+        Invocation current = new Invocation(method, shape);
+        CURRENT.set(current);
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            T result = invocation.get();
+            rows(current).record(rowCount(result));
+            return result;
+        } finally {
+            sample.stop(timer(current, "total"));
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public <T> T content(Supplier<T> contentQuery) {
+        Invocation current = CURRENT.get();
+        if (current == null) {
+            return contentQuery.get();
+        }
+        return timer(current, "content").record(contentQuery);
+    }
+
+    /**
+     * count 는 다른 쓰레드(ParallelCountExecutor)나 나중에(PageableExecutionUtils) 실행될 수 있으므로
+     * 감쌀 때의 태그를 사용한다. 실제로 실행되지 않은 count 는 기록되지 않는다.
+     */
+    public LongSupplier count(LongSupplier countQuery) {
+        return countTimer().apply(countQuery);
+    }
+
+    public UnaryOperator<LongSupplier> countTimer() {
+        Invocation current = CURRENT.get();
+        if (current == null) {
+            return UnaryOperator.identity();
+        }
+        Timer timer = timer(current, "count");
+        return countQuery -> () -> {
+            Timer.Sample sample = Timer.start(registry);
+            try {
+                return countQuery.getAsLong();
+            } finally {
+                sample.stop(timer);
+            }
+        };
+    }
+
+    // 조회 결과 행 수. 벌크 연산(long/int 반환)은 변경된 행 수
+    private static long rowCount(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof KeysetSlice) {
+            return ((KeysetSlice<?>) result).getContent().size();
+        }
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        return result == null ? 0 : 1;
+    }
+
+    private Timer timer(Invocation invocation, String phase) {
+        return Timer.builder(TIMER)
+                .tag("method", invocation.method)
+                .tag("shape", invocation.shape)
+                .tag("phase", phase)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private DistributionSummary rows(Invocation invocation) {
+        return DistributionSummary.builder(ROWS)
+                .tag("method", invocation.method)
+                .tag("shape", invocation.shape)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    private static class Invocation {
+
+        private final String method;
+        private final String shape;
+
+        private Invocation(String method, String shape) {
+            this.method = method;
+            this.shape = shape;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.repository.support;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberSearchQueryTemplates;
+
+/**
+ * study.querydsl.repository 패키지 리포지토리(MemberRepositoryImpl, MemberJpaRepository,
+ * Querydsl4RepositorySupport 구현체)의 public 메서드를 RepositoryMetrics 로 측정한다.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class RepositoryMetricsAspect {
+
+    private final RepositoryMetrics metrics;
+
+    // CompletableFuture 를 반환하는 비동기 메서드는 제외 (실제 조회는 내부에서 호출하는 동기 메서드에서 측정)
+    @Around("within(study.querydsl.repository.*) && execution(public * *(..))"
+            + " && !execution(java.util.concurrent.CompletableFuture *(..))"
+            + " && !within(study.querydsl.repository.MemberSearchQueryTemplates)")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        String method = signature.getDeclaringType().getSimpleName() + "." + signature.getName();
+        try {
+            return metrics.record(method, shapeOf(joinPoint.getArgs()), () -> {
+                try {
+                    return joinPoint.proceed();
+                } catch (Throwable e) {
+                    throw new InvocationFailure(e);
+                }
+            });
+        } catch (InvocationFailure failure) {
+            throw failure.getCause();
+        }
+    }
+
+    private static String shapeOf(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof MemberSearchCondition) {
+                return MemberSearchQueryTemplates.describe((MemberSearchCondition) arg);
+            }
+        }
+        return RepositoryMetrics.NO_CONDITION;
+    }
+
+    // Supplier 안에서 checked 예외를 그대로 전달하기 위한 래퍼
+    private static class InvocationFailure extends RuntimeException {
+
+        private InvocationFailure(Throwable cause) {
+            super(cause);
+        }
+    }
+}
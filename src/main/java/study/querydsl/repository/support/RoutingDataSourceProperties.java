@@ -0,0 +1,36 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.routing")
+public class RoutingDataSourceProperties {
+
+    // true 면 @Transactional(readOnly = true) 는 replica, 나머지는 primary(spring.datasource) 로 보낸다.
+    private boolean enabled = false;
+    private List<Replica> replicas = new ArrayList<>();
+
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+    private Duration healthCheckTimeout = Duration.ofSeconds(2);
+    // 복제 지연이 이 값을 넘는 replica 는 사용하지 않는다.
+    private Duration maxLag = Duration.ofSeconds(10);
+    // 복제 지연(초)을 반환하는 SQL. 없으면 연결 상태만 확인한다.
+    // ex) PostgreSQL: select extract(epoch from now() - pg_last_xact_replay_timestamp())
+    private String lagQuery;
+
+    @Getter @Setter
+    public static class Replica {
+
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
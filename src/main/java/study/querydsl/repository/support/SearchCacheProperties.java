@@ -0,0 +1,21 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.search-cache")
+public class SearchCacheProperties {
+
+    // 변경 후 stale-while-revalidate 동안, 이벤트가 없는 변경(직접 실행한 SQL, 다른 인스턴스)은 ttl 동안 이전 결과를 반환하므로 기본은 사용하지 않는다.
+    private boolean enabled = false;
+    private int maxSize = 10_000;
+    private Duration ttl = Duration.ofSeconds(30);
+    // 만료되었거나 테이블 버전이 바뀐 결과를 이 시간 동안은 그대로 반환하고 백그라운드에서 한 번만 다시 조회한다. (0 이면 항상 바로 다시 조회)
+    private Duration staleWhileRevalidate = Duration.ofSeconds(5);
+    private int refreshThreads = 2;
+    private int refreshQueueCapacity = 100;
+}
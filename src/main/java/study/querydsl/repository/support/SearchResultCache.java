@@ -0,0 +1,226 @@
+package study.querydsl.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 검색 결과 캐시 (LRU + TTL). 키는 정규화한 검색 조건과 페이지.
+ * 항목은 적재 시작 시점의 테이블 버전(TableVersions)을 가지고, 버전이 바뀌면 무효다.
+ * 무효/만료된 항목은 stale-while-revalidate 동안 그대로 반환하고 키마다 한 번만 백그라운드에서 다시 조회한다.
+ * 그 시간이 지나도 갱신되지 않았으면(갱신 실패 등) 요청 쓰레드에서 다시 조회한다.
+ * 버전은 이 인스턴스의 커밋 이벤트로만 바뀌므로 직접 실행한 SQL, 다른 인스턴스의 변경은 ttl 이 지나야 보인다.
+ * 그래서 기본은 사용하지 않는다. (querydsl.search-cache.enabled)
+ */
+@Slf4j
+@Component
+public class SearchResultCache {
+
+    private final SearchCacheProperties properties;
+    private final TableVersions tableVersions;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor refresher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final Map<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+            return size() > properties.getMaxSize();
+        }
+    };
+
+    public SearchResultCache(SearchCacheProperties properties, TableVersions tableVersions,
+                             PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.tableVersions = tableVersions;
+        if (transactionManager == null) {
+            this.readOnlyTransaction = null;
+        } else {
+            this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+            this.readOnlyTransaction.setReadOnly(true);
+        }
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.refresher = new ThreadPoolExecutor(
+                properties.getRefreshThreads(), properties.getRefreshThreads(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getRefreshQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "search-cache-refresh-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static List<Object> key(String name, MemberSearchCondition cond) {
+        return CountCache.key(name, cond.normalize());
+    }
+
+    // Pageable 구현체가 달라도 같은 페이지/정렬이면 같은 키
+    public static List<Object> key(String name, MemberSearchCondition cond, Pageable pageable) {
+        Pageable page = pageable.isPaged()
+                ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort())
+                : Pageable.unpaged();
+        return CountCache.key(name, cond.normalize(), page);
+    }
+
+    /**
+     * @param tables loader 가 읽는 테이블(엔티티). 이 중 하나라도 변경되면 결과가 무효가 된다.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Supplier<T> loader, Class<?>... tables) {
+        if (!properties.isEnabled() || inWriteTransaction()) {
+            return loader.get();
+        }
+
+        long now = System.nanoTime();
+        long[] versions = tableVersions.snapshot(tables);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            long ttl = properties.getTtl().toNanos();
+            boolean expired = now - entry.loadedAt >= ttl;
+            if (!expired && Arrays.equals(entry.versions, versions)) {
+                hits.incrementAndGet();
+                return (T) entry.value;
+            }
+            // 만료는 만료 시각부터, 버전 변경은 처음 발견한 시각부터 stale-while-revalidate 동안 이전 결과를 반환
+            long staleSince = expired ? entry.loadedAt + ttl : entry.markStale(now);
+            if (now - staleSince < properties.getStaleWhileRevalidate().toNanos()) {
+                staleHits.incrementAndGet();
+                refresh(key, entry, loader, tables);
+                return (T) entry.value;
+            }
+        }
+
+        misses.incrementAndGet();
+        T value = loader.get();
+        synchronized (entries) {
+            entries.put(key, new Entry(value, versions, now));
+        }
+        return value;
+    }
+
+    // 키마다 하나의 갱신만 실행한다. 실패하거나 큐가 가득 차면 다음 stale 조회에서 다시 시도한다.
+    private void refresh(Object key, Entry stale, Supplier<?> loader, Class<?>[] tables) {
+        if (!stale.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Runnable task = () -> {
+            try {
+                long startedAt = System.nanoTime();
+                long[] versions = tableVersions.snapshot(tables);
+                Object value = readOnlyTransaction == null
+                        ? loader.get()
+                        : readOnlyTransaction.execute(status -> loader.get());
+                synchronized (entries) {
+                    // 그 사이 다른 조회가 새로 적재했으면 덮어쓰지 않는다.
+                    Entry current = entries.get(key);
+                    if (current == null || current == stale) {
+                        entries.put(key, new Entry(value, versions, startedAt));
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.warn("search result refresh failed. key={}", key, e);
+            } finally {
+                stale.refreshing.set(false);
+            }
+        };
+        try {
+            submitRefresh(task);
+        } catch (RejectedExecutionException e) {
+            stale.refreshing.set(false);
+        }
+    }
+
+    // 테스트에서 갱신 시점을 제어할 수 있도록 분리
+    protected void submitRefresh(Runnable task) {
+        refresher.execute(task);
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    // 쓰기 트랜잭션 안의 조회는 커밋되지 않은 변경을 포함할 수 있으므로 캐시하지 않는다.
+    private boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // stale 응답도 DB 조회를 대신했으므로 hit 로 계산
+    public double getHitRatio() {
+        long served = hits.get() + staleHits.get();
+        long total = served + misses.get();
+        return total == 0 ? 0 : (double) served / total;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long[] versions;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private final AtomicLong staleSince = new AtomicLong(Long.MIN_VALUE);
+
+        private Entry(Object value, long[] versions, long loadedAt) {
+            this.value = value;
+            this.versions = versions;
+            this.loadedAt = loadedAt;
+        }
+
+        private long markStale(long now) {
+            staleSince.compareAndSet(Long.MIN_VALUE, now);
+            return staleSince.get();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.streaming")
+public class StreamingProperties {
+
+    // JDBC fetch size. 드라이버가 한 번에 가져오는 행 수
+    private int fetchSize = 500;
+    // 응답 스트림을 flush 하는 행 단위
+    private int flushRows = 500;
+}
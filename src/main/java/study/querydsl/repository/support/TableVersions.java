@@ -0,0 +1,39 @@
+package study.querydsl.repository.support;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 테이블(엔티티)별 버전. Hibernate 커밋 이벤트와 벌크 연산마다 증가한다.
+ * 조회 시작 시점의 버전과 현재 버전이 다르면 그 사이에 변경이 있었던 것이다.
+ */
+@Component
+public class TableVersions implements EntityChangeListener {
+
+    private final ConcurrentMap<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public long version(Class<?> table) {
+        AtomicLong version = versions.get(table);
+        return version == null ? 0 : version.get();
+    }
+
+    public long[] snapshot(Class<?>... tables) {
+        long[] snapshot = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            snapshot[i] = version(tables[i]);
+        }
+        return snapshot;
+    }
+
+    public void bump(Class<?> table) {
+        versions.computeIfAbsent(table, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    @Override
+    public void onEntityChange(EntityChangeEvent event) {
+        bump(event.getEntityType());
+    }
+}
@@ -0,0 +1,511 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.QTeamStatsDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀별 회원 수, 나이 평균/최소/최대를 메모리에서 증분 유지한다. (/teams/stats)
+ * 회원마다 (팀, 나이)를 기억해서 insert/update/delete 커밋 이벤트와 벌크 연산 id 로 이전 값을 빼고 새 값을 더한다.
+ * 최소/최대는 삭제에도 유지되도록 팀별 나이 히스토그램으로 계산한다.
+ * 주기적으로 group by 결과와 비교(reconcile)해서 다르면 전체 다시 적재한다.
+ * 같은 히스토그램으로 페이징 API 의 전체 수를 추정한다. (estimateCount)
+ * 회원 수가 max-members 를 넘으면 메모리 집계를 버리고 group by 로 계산한다.
+ */
+@Slf4j
+@Component
+public class TeamStatsAggregator implements EntityChangeListener {
+
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate primaryTransaction;
+    private final TeamStatsProperties properties;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "team-stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong drifts = new AtomicLong();
+
+    // this 로 동기화
+    private State state = new State();
+    // 적재 중에 들어온 변경. 새 상태로 교체하기 전에 순서대로 다시 적용한다.
+    private List<Consumer<State>> pending;
+    private volatile boolean ready;
+
+    public TeamStatsAggregator(EntityManager em, PlatformTransactionManager transactionManager, TeamStatsProperties properties) {
+        this.em = em;
+        // 전체 적재는 읽기 전용 트랜잭션 (읽기/쓰기 분리 시 replica)
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // 방금 커밋된 변경을 다시 읽을 때는 primary 에서 새 트랜잭션으로 읽는다. (replica 는 아직 반영되지 않았을 수 있다.)
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.primaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = properties;
+    }
+
+    /**
+     * @return 팀 id 순 통계. 적재 전이거나 비활성화되어 있으면 group by 쿼리로 계산한다.
+     */
+    public List<TeamStatsDto> stats() {
+        if (!properties.isEnabled() || !ready) {
+            return queryStats();
+        }
+        synchronized (this) {
+            return state.stats();
+        }
+    }
+
+    /**
+     * 팀 이름/나이 조건의 회원 수를 히스토그램으로 계산한다. (커밋 이벤트 반영 시점까지의 값)
+     * @return username 조건이 있거나, 적재 전이거나, 쓰기 트랜잭션 안이면 빈 값
+     */
+    public OptionalLong estimateCount(MemberSearchCondition cond) {
+        if (!properties.isEnabled() || !ready || hasText(cond.getUsername()) || inWriteTransaction()) {
+            return OptionalLong.empty();
+        }
+        String teamName = hasText(cond.getTeamName()) ? cond.getTeamName() : null;
+        synchronized (this) {
+            return OptionalLong.of(state.count(teamName, cond.getAgeGoe(), cond.getAgeLoe()));
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getDrifts() {
+        return drifts.get();
+    }
+
+    @Override
+    public void onEntityChange(EntityChangeEvent event) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (event.isAbout(Member.class)) {
+            onMemberChange(event);
+        } else if (event.isAbout(Team.class)) {
+            onTeamChange(event);
+        }
+    }
+
+    private void onMemberChange(EntityChangeEvent event) {
+        switch (event.getType()) {
+            case INSERT:
+            case UPDATE:
+                Long memberId = (Long) event.getId();
+                Member changed = (Member) event.getEntity();
+                Long teamId = teamIdOf(changed.getTeam());
+                int age = changed.getAge();
+                mutate(target -> target.putMember(memberId, teamId, age));
+                break;
+            case DELETE:
+                mutate(target -> target.removeMember((Long) event.getId()));
+                break;
+            case BULK:
+                // 커밋 전 이벤트는 무시한다. 커밋 후 같은 이벤트가 다시 발행된다.
+                if (!event.isCommitted()) {
+                    break;
+                }
+                if (event.getIds() == null) {
+                    loadAsync();
+                } else {
+                    // 커밋한 쓰레드를 붙잡지 않도록 team-stats 쓰레드에서 다시 읽는다.
+                    submitLoad(() -> reload(event.getIds()));
+                }
+                break;
+        }
+    }
+
+    private void onTeamChange(EntityChangeEvent event) {
+        switch (event.getType()) {
+            case INSERT:
+            case UPDATE:
+                Long teamId = (Long) event.getId();
+                String name = ((Team) event.getEntity()).getName();
+                mutate(target -> target.putTeam(teamId, name));
+                break;
+            case DELETE:
+                mutate(target -> target.removeTeam((Long) event.getId()));
+                break;
+            case BULK:
+                if (event.isCommitted()) {
+                    loadAsync();
+                }
+                break;
+        }
+    }
+
+    private synchronized void mutate(Consumer<State> mutation) {
+        if (pending != null) {
+            pending.add(mutation);
+        }
+        mutation.accept(state);
+        if (ready && state.members.size() > properties.getMaxMembers()) {
+            // 적재 후 늘어난 회원이 상한을 넘으면 다시 적재하지 않고 group by 로 계산한다.
+            log.warn("team stats exceeded {} members, /teams/stats uses group by", properties.getMaxMembers());
+            ready = false;
+            state = new State();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long interval = properties.getReconcileInterval().toMillis();
+        scheduler.execute(this::load);
+        scheduler.scheduleWithFixedDelay(this::reconcile, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void loadAsync() {
+        if (properties.isEnabled()) {
+            submitLoad(this::load);
+        }
+    }
+
+    // 테스트에서 실행 시점을 제어할 수 있도록 분리
+    protected void submitLoad(Runnable task) {
+        scheduler.execute(task);
+    }
+
+    // 벌크 연산 대상의 현재 (팀, 나이)를 다시 읽는다. (삭제된 id 는 제거) 실패하면 전체 다시 적재한다.
+    private void reload(Collection<?> ids) {
+        Map<Long, Tuple> reloaded;
+        try {
+            reloaded = reloadMembers(ids);
+        } catch (RuntimeException e) {
+            log.warn("team stats reload failed, reloading all members", e);
+            load();
+            return;
+        }
+        mutate(target -> ids.forEach(id -> {
+            Tuple row = reloaded.get(id);
+            if (row == null) {
+                target.removeMember((Long) id);
+            } else {
+                target.putMember((Long) id, row.get(member.team.id), row.get(member.age));
+            }
+        }));
+    }
+
+    public void load() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+
+        State loaded = new State();
+        try {
+            loadTeams(loaded::putTeam);
+            loadMembers((memberId, teamId, age) -> {
+                if (loaded.members.size() >= properties.getMaxMembers()) {
+                    throw new IllegalStateException("more than " + properties.getMaxMembers() + " members");
+                }
+                loaded.putMember(memberId, teamId, age);
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pending = null;
+                ready = false;
+                state = new State();
+            }
+            log.warn("team stats load failed, /teams/stats uses group by", e);
+            return;
+        }
+
+        synchronized (this) {
+            pending.forEach(mutation -> mutation.accept(loaded));
+            pending = null;
+            state = loaded;
+            ready = true;
+        }
+        log.info("team stats loaded: {} teams, {} members in {} ms",
+                loaded.teams.size(), loaded.members.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 메모리 집계를 group by 결과와 비교해서 다르면 전체 다시 적재한다.
+     * 비교 중에 커밋된 변경 때문에 일시적으로 다를 수도 있으며, 그 경우에도 다시 적재하면 맞춰진다.
+     * @return 일치하면 true
+     */
+    public boolean reconcile() {
+        if (!ready) {
+            return true;
+        }
+        try {
+            List<TeamStatsDto> expected = queryStats();
+            List<TeamStatsDto> actual;
+            synchronized (this) {
+                actual = state.stats();
+            }
+            if (sameStats(expected, actual)) {
+                return true;
+            }
+            drifts.incrementAndGet();
+            log.warn("team stats drifted from database, reloading (expected={}, actual={})", expected, actual);
+            load();
+            return false;
+        } catch (RuntimeException e) {
+            log.warn("team stats reconcile failed", e);
+            return true;
+        }
+    }
+
+    private static boolean sameStats(List<TeamStatsDto> expected, List<TeamStatsDto> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            TeamStatsDto e = expected.get(i);
+            TeamStatsDto a = actual.get(i);
+            boolean same = Objects.equals(e.getTeamId(), a.getTeamId())
+                    && Objects.equals(e.getTeamName(), a.getTeamName())
+                    && e.getMemberCount() == a.getMemberCount()
+                    && Objects.equals(e.getMinAge(), a.getMinAge())
+                    && Objects.equals(e.getMaxAge(), a.getMaxAge())
+                    && (e.getAvgAge() == null ? a.getAvgAge() == null
+                        : a.getAvgAge() != null && Math.abs(e.getAvgAge() - a.getAvgAge()) < 1e-6);
+            if (!same) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 팀 id 순 group by. 회원이 없는 팀도 포함한다.
+    protected List<TeamStatsDto> queryStats() {
+        return readOnlyTransaction.execute(status -> new JPAQueryFactory(em)
+                .select(new QTeamStatsDto(
+                        team.id,
+                        team.name,
+                        member.count(),
+                        member.age.avg(),
+                        member.age.min(),
+                        member.age.max()
+                ))
+                .from(team)
+                .leftJoin(team.members, member)
+                .groupBy(team.id, team.name)
+                .orderBy(team.id.asc())
+                .fetch());
+    }
+
+    protected void loadTeams(BiConsumer<Long, String> sink) {
+        readOnlyTransaction.executeWithoutResult(status -> new JPAQueryFactory(em)
+                .select(team.id, team.name)
+                .from(team)
+                .fetch()
+                .forEach(row -> sink.accept(row.get(team.id), row.get(team.name))));
+    }
+
+    // (회원 id, 팀 id, 나이). team.id 는 외래 키 컬럼이므로 조인하지 않는다.
+    protected void loadMembers(MemberSink sink) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Tuple> rows = new JPAQueryFactory(em)
+                    .select(member.id, member.team.id, member.age)
+                    .from(member)
+                    .setHint(QueryHints.FETCH_SIZE, properties.getLoadFetchSize())
+                    .setHint(QueryHints.READ_ONLY, true)
+                    .stream()) {
+                rows.forEach(row -> sink.accept(row.get(member.id), row.get(member.team.id), row.get(member.age)));
+            }
+        });
+    }
+
+    protected Map<Long, Tuple> reloadMembers(Collection<?> ids) {
+        List<Long> all = new ArrayList<>(ids.size());
+        ids.forEach(id -> all.add((Long) id));
+
+        Map<Long, Tuple> reloaded = new HashMap<>();
+        primaryTransaction.executeWithoutResult(status -> {
+            JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+            try (NPlusOneDetector.Suppression suppression = NPlusOneDetector.suppress()) {
+                for (int from = 0; from < all.size(); from += 1_000) {
+                    queryFactory
+                            .select(member.id, member.team.id, member.age)
+                            .from(member)
+                            .where(member.id.in(all.subList(from, Math.min(from + 1_000, all.size()))))
+                            .fetch()
+                            .forEach(row -> reloaded.put(row.get(member.id), row));
+                }
+            }
+        });
+        return reloaded;
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    // 커밋 이후라 세션이 닫혀 있을 수 있으므로 프록시는 초기화하지 않고 id 만 읽는다.
+    private static Long teamIdOf(Team memberTeam) {
+        if (memberTeam == null) {
+            return null;
+        }
+        if (memberTeam instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) memberTeam).getHibernateLazyInitializer().getIdentifier();
+        }
+        return memberTeam.getId();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @FunctionalInterface
+    protected interface MemberSink {
+        void accept(Long memberId, Long teamId, Integer age);
+    }
+
+    private static class State {
+
+        // 회원 id -> (팀 id, 나이)
+        private final Map<Long, Fact> members = new HashMap<>();
+        private final TreeMap<Long, Aggregate> teams = new TreeMap<>();
+        // 팀이 없는 회원. 통계에는 나오지 않고 estimateCount 에만 사용한다.
+        private final Aggregate noTeam = new Aggregate();
+
+        private void putTeam(Long teamId, String name) {
+            teams.computeIfAbsent(teamId, id -> new Aggregate()).name = name;
+        }
+
+        private void removeTeam(Long teamId) {
+            teams.remove(teamId);
+        }
+
+        private void putMember(Long memberId, Long teamId, Integer age) {
+            removeMember(memberId);
+            if (age == null) {
+                return;
+            }
+            members.put(memberId, new Fact(teamId, age));
+            aggregateOf(teamId).add(age);
+        }
+
+        private void removeMember(Long memberId) {
+            Fact old = members.remove(memberId);
+            if (old != null) {
+                Aggregate aggregate = old.teamId == null ? noTeam : teams.get(old.teamId);
+                if (aggregate != null) {
+                    aggregate.remove(old.age);
+                }
+            }
+        }
+
+        private Aggregate aggregateOf(Long teamId) {
+            return teamId == null ? noTeam : teams.computeIfAbsent(teamId, id -> new Aggregate());
+        }
+
+        private List<TeamStatsDto> stats() {
+            List<TeamStatsDto> result = new ArrayList<>(teams.size());
+            teams.forEach((teamId, aggregate) -> result.add(aggregate.toDto(teamId)));
+            return result;
+        }
+
+        // teamName 이 null 이면 팀이 없는 회원을 포함한 전체
+        private long count(String teamName, Integer ageGoe, Integer ageLoe) {
+            long count = 0;
+            for (Aggregate aggregate : teams.values()) {
+                if (teamName == null || teamName.equals(aggregate.name)) {
+                    count += aggregate.count(ageGoe, ageLoe);
+                }
+            }
+            return teamName == null ? count + noTeam.count(ageGoe, ageLoe) : count;
+        }
+    }
+
+    private static class Fact {
+        private final Long teamId;
+        private final int age;
+
+        private Fact(Long teamId, int age) {
+            this.teamId = teamId;
+            this.age = age;
+        }
+    }
+
+    private static class Aggregate {
+
+        private String name;
+        private long count;
+        private long sum;
+        // 나이 -> 회원 수
+        private final TreeMap<Integer, Integer> ages = new TreeMap<>();
+
+        private void add(int age) {
+            count++;
+            sum += age;
+            ages.merge(age, 1, Integer::sum);
+        }
+
+        private void remove(int age) {
+            count--;
+            sum -= age;
+            ages.computeIfPresent(age, (key, value) -> value == 1 ? null : value - 1);
+        }
+
+        private long count(Integer ageGoe, Integer ageLoe) {
+            if (ageGoe == null && ageLoe == null) {
+                return count;
+            }
+            int from = ageGoe == null ? Integer.MIN_VALUE : ageGoe;
+            int to = ageLoe == null ? Integer.MAX_VALUE : ageLoe;
+            if (from > to) {
+                return 0;
+            }
+            long result = 0;
+            for (int members : ages.subMap(from, true, to, true).values()) {
+                result += members;
+            }
+            return result;
+        }
+
+        private TeamStatsDto toDto(Long teamId) {
+            if (count == 0) {
+                return new TeamStatsDto(teamId, name, 0L, null, null, null);
+            }
+            return new TeamStatsDto(teamId, name, count, (double) sum / count, ages.firstKey(), ages.lastKey());
+        }
+    }
+}
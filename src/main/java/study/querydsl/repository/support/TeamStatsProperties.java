@@ -0,0 +1,20 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.team-stats")
+public class TeamStatsProperties {
+
+    // false 면 /teams/stats 를 매번 group by 쿼리로 계산한다.
+    private boolean enabled = true;
+    // 메모리 집계와 DB 집계를 비교하는 주기. 다르면 전체 다시 적재한다.
+    private Duration reconcileInterval = Duration.ofMinutes(5);
+    // 회원마다 (팀, 나이)를 기억하므로 회원 수가 이보다 많으면 메모리에 유지하지 않는다. (group by)
+    private int maxMembers = 1_000_000;
+    private int loadFetchSize = 1_000;
+}
@@ -0,0 +1,23 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.username-index")
+public class UsernameIndexProperties {
+
+    // false 면 PREFIX/CONTAINS 검색을 항상 LIKE 로 실행한다.
+    private boolean enabled = true;
+    // 후보가 이보다 많으면(선택도가 낮으면) IN 목록 대신 LIKE 로 실행한다.
+    // in_clause_parameter_padding 으로 바인드 수가 2의 거듭제곱으로 늘어나므로 (1,000 -> 1,024) 작게 둔다.
+    private int maxCandidates = 1_000;
+    private int rebuildFetchSize = 1_000;
+    // 이 주기로 DB 의 회원 수/max(id) 와 비교한다. 두 주기 안에 일치를 확인하지 못하면 LIKE 로 실행한다.
+    private Duration freshnessCheckInterval = Duration.ofSeconds(30);
+    // 커밋 이벤트로 알 수 없는 변경(직접 실행한 SQL 등)에 대비한 전체 재구성 주기
+    private Duration rebuildInterval = Duration.ofHours(1);
+}
@@ -18,11 +18,13 @@ import study.querydsl.dto.UserDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.LambdaProjections;
 
 import javax.persistence.EntityManager;
 
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static study.querydsl.entity.QMember.*;
 
 @SpringBootTest
@@ -295,4 +297,33 @@ public class QuerydslAdvancedTest {
 
         // 단점 : 1. Q파일 생성 2. DTO가   Querydsl 의존성을 가진다.
     }
+
+    @Test
+    public void findDtoByLambdaProjections() {
+        // Projections.bean / fields / constructor 와 같지만 행마다 리플렉션을 호출하지 않는다.
+        List<MemberDto> bySetter = queryFactory
+                .select(LambdaProjections.bean(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .fetch();
+
+        List<UserDto> byField = queryFactory
+                .select(LambdaProjections.fields(UserDto.class,
+                        member.username.as("name"),
+                        member.age))
+                .from(member)
+                .fetch();
+
+        List<MemberDto> byConstructor = queryFactory
+                .select(LambdaProjections.constructor(MemberDto.class,
+                        member.username,
+                        member.age))
+                .from(member)
+                .fetch();
+
+        assertThat(bySetter).extracting("username").containsExactly("member1", "member2", "member3", "member4");
+        assertThat(byField).extracting("name").containsExactly("member1", "member2", "member3", "member4");
+        assertThat(byConstructor).extracting("age").containsExactly(10, 20, 30, 40);
+    }
 }
@@ -0,0 +1,88 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import study.querydsl.repository.support.ReadWriteRoutingDataSource;
+import study.querydsl.repository.support.ReplicaPool;
+import study.querydsl.repository.support.RoutingDataSourceProperties;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 임베디드 H2 2개(primary, replica1)로 라우팅 확인. 복제는 하지 않으므로 접속한 DB 이름으로 구분한다.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=17",
+        "querydsl.routing.enabled=true",
+        "querydsl.routing.replicas[0].name=replica1",
+        "querydsl.routing.replicas[0].url=jdbc:h2:mem:replica1;DB_CLOSE_DELAY=-1",
+        "querydsl.routing.replicas[0].username=sa"
+})
+class RoutingDataSourceTest {
+
+    @Autowired EntityManager em;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired ReplicaPool replicaPool;
+    @Autowired RoutingDataSourceProperties properties;
+    @Autowired HikariDataSource primaryDataSource;
+
+    @BeforeEach
+    public void checkReplicas() {
+        replicaPool.check();
+    }
+
+    @AfterEach
+    public void reset() {
+        RequestContextHolder.resetRequestAttributes();
+        properties.setLagQuery(null);
+        replicaPool.check();
+    }
+
+    @Test
+    public void routeReadOnlyToReplica() {
+        assertThat(database(true)).isEqualToIgnoringCase("replica1");
+        assertThat(database(false)).isEqualToIgnoringCase("primary");
+    }
+
+    @Test
+    public void bindHikariPropertiesToPrimary() {
+        // spring.datasource.hikari.* 가 라우팅의 primary 풀에도 적용된다.
+        assertThat(primaryDataSource.getPoolName()).isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+        assertThat(primaryDataSource.getMaximumPoolSize()).isEqualTo(17);
+    }
+
+    @Test
+    public void fallbackToPrimaryWhenReplicaLags() {
+        properties.setLagQuery("select 60"); // max-lag 10s 초과
+        replicaPool.check();
+
+        assertThat(replicaPool.getReplicas().get(0).isHealthy()).isFalse();
+        assertThat(database(true)).isEqualToIgnoringCase("primary");
+    }
+
+    @Test
+    public void readYourWritesInRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        assertThat(database(true)).isEqualToIgnoringCase("replica1");
+        database(false);
+        // 같은 요청에서 쓰기 이후의 읽기는 primary
+        assertThat(database(true)).isEqualToIgnoringCase("primary");
+    }
+
+    private String database(boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(readOnly);
+        return tx.execute(status -> String.valueOf(em.createNativeQuery("select database()").getSingleResult()));
+    }
+}
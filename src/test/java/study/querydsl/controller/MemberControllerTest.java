@@ -0,0 +1,44 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.repository.support.KeysetCursor;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// 잘못된 요청 파라미터는 500 이 아니라 400 으로 응답한다.
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+class MemberControllerTest {
+
+    @Autowired MockMvc mockMvc;
+
+    @Test
+    public void invalidKeysetCursor() throws Exception {
+        mockMvc.perform(get("/v4/members").param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest());
+        // 형식은 맞지만 age 값이 숫자가 아닌 커서
+        String tampered = new KeysetCursor("age", Sort.Direction.ASC, 1L, "abc").encode();
+        mockMvc.perform(get("/v4/members").param("cursor", tampered))
+                .andExpect(status().isBadRequest());
+        // 지원하지 않는 정렬 속성
+        String unsupported = new KeysetCursor("teamName", Sort.Direction.ASC, 1L, "teamA").encode();
+        mockMvc.perform(get("/v4/members").param("cursor", unsupported))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void unsupportedSliceSort() throws Exception {
+        mockMvc.perform(get("/v5/members").param("sort", "team,desc"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v5/members").param("sort", "teamName,desc"))
+                .andExpect(status().isOk());
+    }
+}
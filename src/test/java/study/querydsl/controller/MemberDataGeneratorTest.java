@@ -0,0 +1,117 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 생성기는 chunk 마다 자신의 트랜잭션으로 커밋하므로 @Transactional 을 쓰지 않고 테스트 후 지운다.
+@SpringBootTest
+class MemberDataGeneratorTest {
+
+    @Autowired MemberDataGenerator memberDataGenerator;
+    @Autowired EntityManager em;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    public void after() {
+        deleteAll();
+    }
+
+    @Test
+    public void fixedDataset() {
+        memberDataGenerator.generate(new SeedProperties());
+
+        List<Object[]> rows = rows();
+        assertThat(rows).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            Object[] row = rows.get(i);
+            assertThat(row[0]).isEqualTo("member" + i);
+            assertThat(row[1]).isEqualTo(i % 2 == 0 ? "teamA" : "teamB");
+            assertThat(row[2]).isEqualTo(i / 10 + 10);
+        }
+    }
+
+    @Test
+    public void sameSeedSameData() {
+        // chunk 를 여러 쓰레드가 나눠 저장해도 chunk 별 시드가 고정이므로 결과가 같다.
+        memberDataGenerator.generate(generated(42));
+        List<String> first = snapshot();
+        deleteAll();
+
+        memberDataGenerator.generate(generated(42));
+        List<String> second = snapshot();
+        deleteAll();
+
+        memberDataGenerator.generate(generated(7));
+        List<String> otherSeed = snapshot();
+
+        assertThat(first).hasSize(2000).isEqualTo(second);
+        assertThat(otherSeed).hasSize(2000).isNotEqualTo(first);
+    }
+
+    @Test
+    public void distribution() {
+        SeedProperties properties = generated(42);
+        memberDataGenerator.generate(properties);
+
+        List<Object[]> rows = rows();
+        Map<String, Long> teamSizes = rows.stream()
+                .collect(Collectors.groupingBy(row -> (String) row[1], Collectors.counting()));
+        double ageAverage = rows.stream().mapToInt(row -> (Integer) row[2]).average().orElse(0);
+
+        // skew 1.0, 팀 5개: 가중치 1 : 1/2 : 1/3 : 1/4 : 1/5
+        assertThat(teamSizes).containsOnlyKeys("teamA", "teamB", "teamC", "teamD", "teamE");
+        assertThat(teamSizes.get("teamA")).isGreaterThan(teamSizes.get("teamB"));
+        assertThat(teamSizes.get("teamA")).isGreaterThan(teamSizes.get("teamE") * 3);
+        assertThat(rows).allSatisfy(row -> assertThat((Integer) row[2]).isBetween(10, 80));
+        assertThat(ageAverage).isBetween(34.0, 36.0);
+    }
+
+    private SeedProperties generated(long randomSeed) {
+        SeedProperties properties = new SeedProperties();
+        properties.setMode(SeedProperties.Mode.GENERATED);
+        properties.setTeams(5);
+        properties.setMembers(2000);
+        properties.setTeamSkew(1.0);
+        properties.setChunkSize(300);
+        properties.setThreads(4);
+        properties.setRandomSeed(randomSeed);
+        return properties;
+    }
+
+    // username, team.name, age (member{i} 의 i 순서)
+    private List<Object[]> rows() {
+        return new TransactionTemplate(transactionManager).execute(status -> em.createQuery(
+                        "select m.username, t.name, m.age from Member m join m.team t", Object[].class)
+                .getResultList().stream()
+                .sorted((a, b) -> Long.compare(index(a), index(b)))
+                .collect(Collectors.toList()));
+    }
+
+    private List<String> snapshot() {
+        return rows().stream()
+                .map(row -> row[0] + "/" + row[1] + "/" + row[2])
+                .collect(Collectors.toList());
+    }
+
+    private static long index(Object[] row) {
+        return Long.parseLong(((String) row[0]).substring("member".length()));
+    }
+
+    private void deleteAll() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+}
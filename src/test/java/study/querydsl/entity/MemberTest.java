@@ -1,5 +1,8 @@
 package study.querydsl.entity;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -7,10 +10,12 @@ import org.springframework.test.annotation.Commit;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
 
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -22,6 +27,15 @@ class MemberTest {
     @Autowired
     EntityManager em;
 
+    @Autowired
+    EntityManagerFactory emf;
+
+    @AfterEach
+    public void evictSecondLevelCache() {
+        // 롤백된 엔티티가 캐시에 남지 않도록
+        emf.getCache().evictAll();
+    }
+
     @Test
     public void testEntity() {
         Team teamA = new Team("teamA");
@@ -51,5 +65,32 @@ class MemberTest {
             System.out.println("member.getTeam() : " + member.getTeam());
         }
     }
-}
 
+    @Test
+    public void teamSecondLevelCache() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.flush();
+        em.clear();
+
+        // 처음 조회 시 DB 에서 읽어서 캐시에 저장
+        Team loaded = em.find(Team.class, teamA.getId());
+        assertThat(loaded.getMembers()).hasSize(2);
+        em.clear();
+
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        long statements = statistics.getPrepareStatementCount();
+        long teamHits = statistics.getDomainDataRegionStatistics(Team.CACHE_REGION).getHitCount();
+        long membersHits = statistics.getDomainDataRegionStatistics(Team.MEMBERS_CACHE_REGION).getHitCount();
+
+        // 이후 팀, 팀의 회원 컬렉션, 회원은 DB 를 거치지 않는다.
+        Team cached = em.find(Team.class, teamA.getId());
+        assertThat(cached.getMembers()).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+
+        assertThat(statistics.getDomainDataRegionStatistics(Team.CACHE_REGION).getHitCount()).isEqualTo(teamHits + 1);
+        assertThat(statistics.getDomainDataRegionStatistics(Team.MEMBERS_CACHE_REGION).getHitCount()).isEqualTo(membersHits + 1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+    }
+}
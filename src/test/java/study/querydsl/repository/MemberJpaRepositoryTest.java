@@ -3,13 +3,18 @@ package study.querydsl.repository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSaveDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -22,6 +27,8 @@ class MemberJpaRepositoryTest {
     EntityManager em;
 
     @Autowired MemberJpaRepository memberJpaRepository;
+    @Autowired MemberSearchQueryTemplates searchQueryTemplates;
+    @Autowired PlatformTransactionManager transactionManager;
 
     @Test
     public void basicTest() {
@@ -192,4 +199,96 @@ class MemberJpaRepositoryTest {
         assertThat(result1).extracting("username").containsExactly("member3", "member4");
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void streamByWhereTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("teamB");
+
+        List<MemberTeamDto> result = new ArrayList<>();
+        memberJpaRepository.streamByWhere(cond, 2, result::add);
+
+        assertThat(result).extracting("username").containsExactly("member3", "member4");
+    }
+
+    @Test
+    public void searchQueryTemplateTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition cond1 = new MemberSearchCondition();
+        cond1.setUsername("member1");
+        MemberSearchCondition cond2 = new MemberSearchCondition();
+        cond2.setUsername("member2");
+
+        memberJpaRepository.searchByTemplate(cond1);
+        long hits = searchQueryTemplates.getHits();
+
+        // 같은 형태(username 조건만)의 검색은 템플릿을 재사용하고 값만 바꿔서 바인딩
+        List<MemberTeamDto> result = memberJpaRepository.searchByTemplate(cond2);
+
+        assertThat(result).extracting("username").containsExactly("member2");
+        assertThat(memberJpaRepository.searchByWhere(cond2)).isEqualTo(result);
+        assertThat(searchQueryTemplates.getHits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // 배치마다 커밋하므로 테스트 트랜잭션 밖에서 실행
+    public void ingestTest() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Team teamA = new Team("teamA");
+        tx.executeWithoutResult(status -> em.persist(teamA));
+
+        List<MemberSaveDto> members = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            members.add(new MemberSaveDto("member" + i, 10 + i % 30, teamA.getId()));
+        }
+
+        try {
+            // batch_size(100) 건씩 별도 트랜잭션으로 저장 -> 100, 100, 50 건 커밋 (insert 는 JDBC 배치로 전송)
+            int saved = memberJpaRepository.ingest(members.iterator());
+
+            MemberSearchCondition cond = new MemberSearchCondition();
+            cond.setTeamName("teamA");
+            assertThat(saved).isEqualTo(250);
+            assertThat(tx.execute(status -> memberJpaRepository.searchByWhere(cond))).hasSize(250);
+        } finally {
+            tx.executeWithoutResult(status -> {
+                em.createQuery("delete from Member").executeUpdate();
+                em.createQuery("delete from Team").executeUpdate();
+            });
+        }
+    }
+
+    @Test
+    public void saveAllDetachesOnlySavedMembers() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            Member member = new Member("member" + i, 10 + i % 30);
+            member.setTeam(teamA);
+            members.add(member);
+        }
+
+        assertThat(memberJpaRepository.saveAll(members)).isEqualTo(250);
+
+        // 저장한 회원만 준영속, 호출 측이 가진 팀은 영속 상태 유지
+        assertThat(members).noneMatch(em::contains);
+        assertThat(em.contains(teamA)).isTrue();
+        assertThat(memberJpaRepository.findById(members.get(0).getId())).isPresent();
+    }
+}
@@ -1,21 +1,31 @@
 package study.querydsl.repository;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.KeysetSlice;
+import study.querydsl.repository.support.PagingProperties;
+import study.querydsl.repository.support.RepositoryMetrics;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @Transactional
@@ -26,6 +36,12 @@ class MemberRepositoryTest {
 
     @Autowired MemberRepository memberRepository;
 
+    @Autowired MemberTestRepository memberTestRepository;
+
+    @Autowired MeterRegistry meterRegistry;
+
+    @Autowired PagingProperties pagingProperties;
+
     @Test
     public void basicTest() {
         Member member = new Member("member1", 10);
@@ -255,6 +271,254 @@ class MemberRepositoryTest {
         }
     }
 
+    @Test
+    public void searchKeysetTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "age"));
+
+        KeysetSlice<MemberTeamDto> first = memberRepository.searchKeyset(cond, pageRequest, null);
+        assertThat(first.getContent()).extracting("username").containsExactly("member4", "member3", "member2");
+        assertThat(first.isHasNext()).isTrue();
+
+        // 커서 이후부터 조회 (offset 없이 age < 20 조건으로 seek)
+        KeysetSlice<MemberTeamDto> second = memberRepository.searchKeyset(cond, pageRequest, first.getNextCursor());
+        assertThat(second.getContent()).extracting("username").containsExactly("member1");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void searchKeysetUsernameWithNulls() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("b", 10, teamA));
+        em.persist(new Member(null, 20, teamA));
+        em.persist(new Member("a", 30, teamA));
+        em.persist(new Member(null, 40, teamA));
+        em.persist(new Member("c", 50, teamA));
+
+        // username 이 null 인 회원은 방향과 관계없이 마지막 (null 끼리는 id 를 같은 방향으로)
+        assertThat(keysetAll(Sort.by(Sort.Direction.ASC, "username"))).extracting("age")
+                .containsExactly(30, 10, 50, 20, 40);
+        assertThat(keysetAll(Sort.by(Sort.Direction.DESC, "username"))).extracting("age")
+                .containsExactly(50, 10, 30, 40, 20);
+    }
+
+    @Test
+    public void searchKeysetDeepOffset() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 20; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+
+        long threshold = pagingProperties.getKeysetOffsetThreshold();
+        pagingProperties.setKeysetOffsetThreshold(5);
+        try {
+            MemberSearchCondition cond = new MemberSearchCondition();
+            // offset 8 > 5 -> 7번째 행(age 8)을 경계로 찾아서 seek
+            KeysetSlice<MemberTeamDto> page = memberRepository.searchKeyset(cond,
+                    PageRequest.of(2, 4, Sort.by("age")), null);
+            assertThat(page.getContent()).extracting("age").containsExactly(9, 10, 11, 12);
+            assertThat(page.isHasNext()).isTrue();
+
+            KeysetSlice<MemberTeamDto> next = memberRepository.searchKeyset(cond,
+                    PageRequest.of(0, 4, Sort.by("age")), page.getNextCursor());
+            assertThat(next.getContent()).extracting("age").containsExactly(13, 14, 15, 16);
+
+            // 범위를 벗어난 offset
+            KeysetSlice<MemberTeamDto> empty = memberRepository.searchKeyset(cond,
+                    PageRequest.of(10, 4, Sort.by("age")), null);
+            assertThat(empty.getContent()).isEmpty();
+            assertThat(empty.isHasNext()).isFalse();
+        } finally {
+            pagingProperties.setKeysetOffsetThreshold(threshold);
+        }
+    }
+
+    // 커서를 따라 끝까지 조회 (페이지 크기 2)
+    private List<MemberTeamDto> keysetAll(Sort sort) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        List<MemberTeamDto> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetSlice<MemberTeamDto> slice = memberRepository.searchKeyset(cond, PageRequest.of(0, 2, sort), cursor);
+            all.addAll(slice.getContent());
+            cursor = slice.getNextCursor();
+        } while (cursor != null);
+        return all;
+    }
+
+    @Test
+    public void searchSliceTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+
+        // limit 4 (3 + 1) 로 조회, count 쿼리 수행 X
+        Slice<MemberTeamDto> first = memberRepository.searchSlice(cond, PageRequest.of(0, 3));
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<MemberTeamDto> second = memberRepository.searchSlice(cond, first.nextPageable());
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    public void searchSliceSortTest() {
+        persistSameAges();
+        MemberSearchCondition cond = new MemberSearchCondition();
+        PageRequest ageDesc = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "age"));
+
+        // 나이가 같은 회원은 id 순으로 이어진다.
+        Slice<MemberTeamDto> first = memberRepository.searchSlice(cond, ageDesc);
+        assertThat(first.getContent()).extracting("username").containsExactly("member5", "member2");
+        Slice<MemberTeamDto> second = memberRepository.searchSlice(cond, first.nextPageable());
+        assertThat(second.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(second.hasNext()).isTrue();
+        Slice<MemberTeamDto> third = memberRepository.searchSlice(cond, second.nextPageable());
+        assertThat(third.getContent()).extracting("username").containsExactly("member1");
+        assertThat(third.hasNext()).isFalse();
+
+        // teamName 은 team 조인으로 정렬 (모두 teamA -> id 순)
+        assertThat(memberRepository.searchSlice(cond, PageRequest.of(0, 2, Sort.by("teamName"))).getContent())
+                .extracting("username").containsExactly("member1", "member2");
+
+        assertThatThrownBy(() -> memberRepository.searchSlice(cond, PageRequest.of(0, 2, Sort.by("team"))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void applySlicingTest() {
+        persistSameAges();
+        MemberSearchCondition cond = new MemberSearchCondition();
+
+        Slice<Member> first = memberTestRepository.applySlicing(cond, PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "age")));
+        assertThat(first.getContent()).extracting("username").containsExactly("member5", "member2");
+        assertThat(first.hasNext()).isTrue();
+        Slice<Member> second = memberTestRepository.applySlicing(cond, first.nextPageable());
+        assertThat(second.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(second.hasNext()).isTrue();
+        Slice<Member> third = memberTestRepository.applySlicing(cond, second.nextPageable());
+        assertThat(third.getContent()).extracting("username").containsExactly("member1");
+        assertThat(third.hasNext()).isFalse();
+
+        // 정렬이 없으면 id 순
+        Slice<Member> unsorted = memberTestRepository.applySlicing(cond, PageRequest.of(0, 3));
+        assertThat(unsorted.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+    }
+
+    private void persistSameAges() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 20, teamA));
+        em.persist(new Member("member4", 20, teamA));
+        em.persist(new Member("member5", 30, teamA));
+    }
+
+    @Test
+    public void deferredJoinTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 110; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setAgeGoe(5);
+
+        // 정렬(age desc)을 유지한 채 해당 페이지 행만 조회
+        Page<Member> page = memberTestRepository.applyPaginationDeferredJoin(cond,
+                PageRequest.of(1, 3, Sort.by(Sort.Direction.DESC, "age")));
+        assertThat(page.getContent()).extracting("age").containsExactly(107, 106, 105);
+        assertThat(page.getTotalElements()).isEqualTo(106);
+
+        // offset 100 이상은 id 를 먼저 페이징 (querydsl.paging.deferred-join-offset-threshold)
+        Page<MemberTeamDto> deep = memberRepository.searchPagingComplex(cond, PageRequest.of(50, 2));
+        assertThat(deep.getContent()).hasSize(2);
+        assertThat(deep.getContent()).extracting("teamName").containsOnly("teamA");
+        assertThat(deep.getTotalElements()).isEqualTo(106);
+    }
+
+    @Test
+    public void repositoryMetricsTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setAgeGoe(10);
+        memberRepository.searchPagingComplex(cond, PageRequest.of(0, 1));
+
+        // method, shape 별로 전체/content/count 지연시간과 행 수를 기록
+        for (String phase : new String[]{"total", "content", "count"}) {
+            Timer timer = meterRegistry.find(RepositoryMetrics.TIMER)
+                    .tags("method", "MemberRepositoryImpl.searchPagingComplex", "shape", "ageGoe", "phase", phase)
+                    .timer();
+            assertThat(timer).as(phase).isNotNull();
+            assertThat(timer.count()).as(phase).isGreaterThanOrEqualTo(1);
+        }
+        DistributionSummary rows = meterRegistry.find(RepositoryMetrics.ROWS)
+                .tags("method", "MemberRepositoryImpl.searchPagingComplex", "shape", "ageGoe")
+                .summary();
+        assertThat(rows).isNotNull();
+        assertThat(rows.max()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void bulkSyncTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30, teamA);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+
+        MemberSearchCondition ageLoe20 = new MemberSearchCondition();
+        ageLoe20.setAgeLoe(20);
+
+        // em.clear() 없이도 영속 상태의 엔티티에 반영된다.
+        long updated = memberRepository.bulkAgePlus(ageLoe20, 1);
+        assertThat(updated).isEqualTo(2);
+        assertThat(member1.getAge()).isEqualTo(11);
+        assertThat(member2.getAge()).isEqualTo(21);
+        assertThat(member3.getAge()).isEqualTo(30);
+
+        MemberSearchCondition ageGoe30 = new MemberSearchCondition();
+        ageGoe30.setAgeGoe(30);
+
+        long deleted = memberRepository.bulkDelete(ageGoe30);
+        assertThat(deleted).isEqualTo(1);
+        assertThat(em.contains(member3)).isFalse();
+        assertThat(em.contains(member1)).isTrue();
+        assertThat(memberRepository.findById(member3.getId())).isEmpty();
+    }
+
     @Test
     public void QuerydslPredicateExecutorTest() {
         Team teamA = new Team("teamA");
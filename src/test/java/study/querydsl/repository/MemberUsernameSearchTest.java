@@ -0,0 +1,104 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchCondition.UsernameMatch;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.MemberUsernameIndex;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// username 인덱스는 커밋 이벤트로 갱신되고 쓰기 트랜잭션 안에서는 사용하지 않으므로 @Transactional 을 쓰지 않고 테스트 후 지운다.
+@SpringBootTest
+class MemberUsernameSearchTest {
+
+    @Autowired EntityManager em;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberJpaRepository memberJpaRepository;
+    @Autowired MemberUsernameIndex usernameIndex;
+
+    private TransactionTemplate tx;
+    private TransactionTemplate readOnly;
+    private Long carolId;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        carolId = tx.execute(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("alice-1", 10, teamA));
+            em.persist(new Member("Alice-2", 20, teamA));
+            em.persist(new Member("bob-alice", 30, teamA));
+            Member carol = new Member("carol", 40, teamA);
+            em.persist(carol);
+            return carol.getId();
+        });
+        usernameIndex.rebuild();
+        assertThat(usernameIndex.checkFreshness()).isTrue();
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+        usernameIndex.rebuild();
+    }
+
+    @Test
+    public void prefixAndContains() {
+        // 인덱스 후보 id + LIKE 확인
+        assertThat(usernameIndex.candidates("ali", UsernameMatch.PREFIX)).hasSize(2);
+
+        Page<MemberTeamDto> prefix = searchPagingSimple(condition("ali", UsernameMatch.PREFIX));
+        assertThat(prefix.getContent()).extracting("username").containsExactlyInAnyOrder("alice-1", "Alice-2");
+        assertThat(prefix.getTotalElements()).isEqualTo(2);
+
+        Page<MemberTeamDto> contains = searchPagingSimple(condition("ALICE", UsernameMatch.CONTAINS));
+        assertThat(contains.getContent()).extracting("username")
+                .containsExactlyInAnyOrder("alice-1", "Alice-2", "bob-alice");
+
+        assertThat(memberJpaRepository.searchByTemplate(condition("alice", UsernameMatch.CONTAINS)))
+                .extracting("username").containsExactlyInAnyOrder("alice-1", "Alice-2", "bob-alice");
+        assertThat(memberJpaRepository.searchByTemplate(condition("bob", UsernameMatch.PREFIX)))
+                .extracting("username").containsExactly("bob-alice");
+    }
+
+    @Test
+    public void renameIsSearchableAfterCommit() {
+        tx.executeWithoutResult(status -> em.find(Member.class, carolId).setUsername("alice-3"));
+
+        assertThat(usernameIndex.candidates("ali", UsernameMatch.PREFIX)).contains(carolId);
+        assertThat(searchPagingSimple(condition("ali", UsernameMatch.PREFIX)).getContent()).extracting("username")
+                .containsExactlyInAnyOrder("alice-1", "Alice-2", "alice-3");
+        assertThat(memberJpaRepository.searchByTemplate(condition("car", UsernameMatch.PREFIX))).isEmpty();
+    }
+
+    private Page<MemberTeamDto> searchPagingSimple(MemberSearchCondition cond) {
+        return readOnly.execute(status -> memberRepository.searchPagingSimple(cond, PageRequest.of(0, 10)));
+    }
+
+    private static MemberSearchCondition condition(String username, UsernameMatch match) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsername(username);
+        cond.setUsernameMatch(match);
+        return cond;
+    }
+}
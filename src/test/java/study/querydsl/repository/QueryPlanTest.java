@@ -0,0 +1,242 @@
+package study.querydsl.repository;
+
+import org.hibernate.Session;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.KeysetSlice;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 리포지토리 쿼리가 실행한 SQL 을 기록해서 H2 EXPLAIN 으로 실행 계획을 확인한다.
+ * where 조건이 있는 select/update/delete 가 테이블 스캔(tableScan)이면 실패한다. (새 조건에 인덱스가 없는 경우)
+ * username PREFIX/CONTAINS 는 MemberUsernameIndex 후보 id 로 처리하므로 대상에서 제외한다.
+ */
+@SpringBootTest
+@Transactional
+@Import(QueryPlanTest.StatementRecorderConfig.class)
+class QueryPlanTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired MemberJpaRepository memberJpaRepository;
+    @Autowired TeamRepository teamRepository;
+
+    @BeforeEach
+    public void before() {
+        for (String name : new String[]{"teamA", "teamB"}) {
+            Team team = new Team(name);
+            em.persist(team);
+            for (int i = 1; i <= 3; i++) {
+                em.persist(new Member(name + "-member" + i, i * 10, team));
+            }
+        }
+        em.persist(new Member("member-no-team", 50));
+        em.flush();
+        em.clear();
+
+        StatementRecorder.start();
+    }
+
+    @AfterEach
+    public void after() {
+        StatementRecorder.stop();
+    }
+
+    @Test
+    public void searchShapes() {
+        // username, teamName, ageGoe, ageLoe 의 모든 조합(16가지)
+        for (int shape = 0; shape < 16; shape++) {
+            MemberSearchCondition cond = conditionOf(shape);
+            memberRepository.search(cond);
+            memberRepository.searchPagingSimple(cond, PageRequest.of(0, 2));
+            memberRepository.searchPagingComplex(cond, PageRequest.of(0, 2));
+            memberRepository.searchPagingComplex(cond, PageRequest.of(50, 2));
+            memberRepository.searchPagingComplexTwo(cond, PageRequest.of(0, 2));
+            memberRepository.searchSlice(cond, PageRequest.of(0, 2));
+            memberJpaRepository.searchByWhere(cond);
+            memberJpaRepository.streamByWhere(cond, 100, row -> {});
+        }
+
+        assertIndexed();
+    }
+
+    @Test
+    public void keysetSeek() {
+        for (String property : new String[]{"id", "username", "age"}) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                for (int shape : new int[]{0, 2, 4}) {
+                    KeysetSlice<?> first = memberRepository.searchKeyset(conditionOf(shape),
+                            PageRequest.of(0, 1, Sort.by(direction, property)), null);
+                    if (first.getNextCursor() != null) {
+                        memberRepository.searchKeyset(conditionOf(shape), PageRequest.of(0, 1), first.getNextCursor());
+                    }
+                }
+            }
+        }
+
+        assertIndexed();
+    }
+
+    @Test
+    public void bulkAndFinders() {
+        MemberSearchCondition teamCond = new MemberSearchCondition();
+        teamCond.setTeamName("teamA");
+        MemberSearchCondition ageCond = new MemberSearchCondition();
+        ageCond.setAgeGoe(20);
+
+        memberRepository.bulkAgePlus(ageCond, 1);
+        memberRepository.bulkDelete(teamCond);
+        memberRepository.findByUsername("teamB-member1");
+        memberJpaRepository.findByUsername_Querydsl("teamB-member1");
+        teamRepository.findPageWithMembers(PageRequest.of(0, 1, Sort.by("name")));
+
+        assertIndexed();
+    }
+
+    private MemberSearchCondition conditionOf(int shape) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        if ((shape & 1) != 0) {
+            cond.setUsername("teamA-member1");
+        }
+        if ((shape & 2) != 0) {
+            cond.setTeamName("teamA");
+        }
+        if ((shape & 4) != 0) {
+            cond.setAgeGoe(10);
+        }
+        if ((shape & 8) != 0) {
+            cond.setAgeLoe(40);
+        }
+        return cond;
+    }
+
+    private void assertIndexed() {
+        List<String> statements = StatementRecorder.filtered();
+        assertThat(statements).as("기록된 조건 쿼리").isNotEmpty();
+
+        Map<String, String> scans = new LinkedHashMap<>();
+        em.unwrap(Session.class).doWork(connection -> {
+            for (String sql : statements) {
+                try (PreparedStatement explain = connection.prepareStatement("explain " + sql)) {
+                    int parameters = explain.getParameterMetaData().getParameterCount();
+                    for (int i = 1; i <= parameters; i++) {
+                        explain.setObject(i, null);
+                    }
+                    try (ResultSet rs = explain.executeQuery()) {
+                        rs.next();
+                        String plan = rs.getString(1);
+                        if (plan.contains(".tableScan")) {
+                            scans.put(sql, plan);
+                        }
+                    }
+                }
+            }
+        });
+
+        assertThat(scans).as("테이블 스캔 쿼리 (sql -> plan)").isEmpty();
+    }
+
+    /**
+     * Hibernate 가 실행하는 SQL 을 기록한다.
+     * 기존 StatementInspector(N+1 감지)를 감싸므로 HibernatePropertiesCustomizer 적용 순서와 무관하다.
+     */
+    static class StatementRecorder implements StatementInspector {
+
+        private static final List<String> statements = new CopyOnWriteArrayList<>();
+        private static volatile boolean recording;
+
+        private final StatementInspector delegate;
+
+        StatementRecorder(StatementInspector delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String inspect(String sql) {
+            String inspected = delegate.inspect(sql);
+            if (recording) {
+                statements.add(inspected == null ? sql : inspected);
+            }
+            return inspected;
+        }
+
+        static void start() {
+            statements.clear();
+            recording = true;
+        }
+
+        static void stop() {
+            recording = false;
+            statements.clear();
+        }
+
+        // where 조건이 있는 select/update/delete (중복 제거, use_sql_comments 주석 제거)
+        static List<String> filtered() {
+            List<String> result = new ArrayList<>();
+            for (String statement : statements) {
+                String sql = statement.replaceFirst("^\\s*/\\*.*?\\*/\\s*", "").trim();
+                String lower = sql.toLowerCase(Locale.ROOT);
+                boolean dml = lower.startsWith("select") || lower.startsWith("update") || lower.startsWith("delete");
+                if (dml && lower.contains(" where ") && !result.contains(sql)) {
+                    result.add(sql);
+                }
+            }
+            return result;
+        }
+    }
+
+    @TestConfiguration
+    static class StatementRecorderConfig {
+
+        // 각 HibernatePropertiesCustomizer 가 적용된 뒤 등록된 StatementInspector 를 StatementRecorder 로 감싼다.
+        @Bean
+        static BeanPostProcessor statementRecorderPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof HibernatePropertiesCustomizer)) {
+                        return bean;
+                    }
+                    HibernatePropertiesCustomizer customizer = (HibernatePropertiesCustomizer) bean;
+                    return (HibernatePropertiesCustomizer) hibernateProperties -> {
+                        customizer.customize(hibernateProperties);
+                        Object inspector = hibernateProperties.get(AvailableSettings.STATEMENT_INSPECTOR);
+                        if (inspector instanceof StatementInspector && !(inspector instanceof StatementRecorder)) {
+                            hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                                    new StatementRecorder((StatementInspector) inspector));
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package study.querydsl.repository;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired TeamRepository teamRepository;
+
+    @Test
+    public void findPageWithMembersTest() {
+        for (String name : new String[]{"teamA", "teamB", "teamC"}) {
+            Team team = new Team(name);
+            em.persist(team);
+            em.persist(new Member(name + "-member1", 10, team));
+            em.persist(new Member(name + "-member2", 20, team));
+        }
+        em.flush();
+        em.clear();
+
+        Page<Team> result = teamRepository.findPageWithMembers(PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "name")));
+
+        // 팀 단위로 페이징되고 members 는 이미 로딩되어 있다.
+        assertThat(result.getTotalElements()).isEqualTo(3);
+        assertThat(result.getContent()).extracting("name").containsExactly("teamC", "teamB");
+        for (Team team : result.getContent()) {
+            assertThat(Hibernate.isInitialized(team.getMembers())).isTrue();
+            assertThat(team.getMembers()).hasSize(2);
+        }
+    }
+}
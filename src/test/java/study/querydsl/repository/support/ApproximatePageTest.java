@@ -0,0 +1,56 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApproximatePageTest {
+
+    private final List<String> fullPage = Arrays.asList("a", "b");
+
+    @Test
+    public void estimateAboveThreshold() {
+        AtomicInteger counts = new AtomicInteger();
+
+        Page<String> page = ApproximatePage.getPage(fullPage, PageRequest.of(3, 2), () -> counts.incrementAndGet() * 100L,
+                OptionalLong.of(12_400_000L), 100_000);
+
+        // count 쿼리를 실행하지 않는다.
+        assertThat(counts.get()).isZero();
+        assertThat(page).isInstanceOf(ApproximatePage.class);
+        assertThat(((ApproximatePage<String>) page).isApproximate()).isTrue();
+        assertThat(page.getTotalElements()).isEqualTo(12_400_000L);
+    }
+
+    @Test
+    public void exactCountBelowThreshold() {
+        AtomicInteger counts = new AtomicInteger();
+
+        Page<String> small = ApproximatePage.getPage(fullPage, PageRequest.of(0, 2), () -> counts.incrementAndGet() * 100L,
+                OptionalLong.of(99_999L), 100_000);
+        Page<String> unknown = ApproximatePage.getPage(fullPage, PageRequest.of(0, 2), () -> counts.incrementAndGet() * 100L,
+                OptionalLong.empty(), 100_000);
+
+        assertThat(small).isNotInstanceOf(ApproximatePage.class);
+        assertThat(small.getTotalElements()).isEqualTo(100L);
+        assertThat(unknown.getTotalElements()).isEqualTo(200L);
+        assertThat(counts.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void lastPageIsExact() {
+        // 마지막 페이지는 content 로 전체 수를 알 수 있으므로 추정값보다 정확한 값을 사용한다.
+        Page<String> page = ApproximatePage.getPage(Arrays.asList("a"), PageRequest.of(5, 2), () -> -1L,
+                OptionalLong.of(1_000_000L), 100_000);
+
+        assertThat(page).isNotInstanceOf(ApproximatePage.class);
+        assertThat(page.getTotalElements()).isEqualTo(11L);
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncQueryExecutorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AsyncQueryExecutor executor;
+
+    @AfterEach
+    public void shutdown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void rejectWhenQueueIsFull() throws Exception {
+        executor = new AsyncQueryExecutor(properties(1, 1, Duration.ofSeconds(10)), registry);
+
+        CompletableFuture<String> running = executor.supply(this::blocked);
+        CompletableFuture<String> queued = executor.supply(this::blocked);
+        CompletableFuture<String> rejected = executor.supply(this::blocked);
+
+        assertThatThrownBy(rejected::get).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TaskRejectedException.class);
+        assertThat(registry.get("querydsl.async.rejected").counter().count()).isEqualTo(1.0);
+        assertThat(registry.get("executor.queued").tag("name", "querydsl.async").gauge().value()).isEqualTo(1.0);
+
+        release.countDown();
+        assertThat(running.get()).isEqualTo("done");
+        assertThat(queued.get()).isEqualTo("done");
+    }
+
+    @Test
+    public void timeout() {
+        executor = new AsyncQueryExecutor(properties(1, 1, Duration.ofMillis(100)), registry);
+
+        CompletableFuture<String> slow = executor.supply(this::blocked);
+
+        assertThatThrownBy(slow::get).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+    }
+
+    private String blocked() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+
+    private static AsyncQueryProperties properties(int threads, int queueCapacity, Duration timeout) {
+        AsyncQueryProperties properties = new AsyncQueryProperties();
+        properties.setThreads(threads);
+        properties.setQueueCapacity(queueCapacity);
+        properties.setTimeout(timeout);
+        return properties;
+    }
+}
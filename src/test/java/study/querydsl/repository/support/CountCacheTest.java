@@ -0,0 +1,46 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountCacheTest {
+
+    @Test
+    public void cacheByNormalizedCondition() {
+        CountCache countCache = new CountCache(new CountCacheProperties());
+        AtomicInteger queries = new AtomicInteger();
+
+        MemberSearchCondition cond1 = new MemberSearchCondition();
+        cond1.setUsername("");
+        cond1.setAgeGoe(10);
+        MemberSearchCondition cond2 = new MemberSearchCondition();
+        cond2.setAgeGoe(10);
+
+        long count1 = countCache.get(CountCache.key("search", cond1.normalize()), () -> queries.incrementAndGet() * 10L);
+        long count2 = countCache.get(CountCache.key("search", cond2.normalize()), () -> queries.incrementAndGet() * 10L);
+
+        // 빈 문자열 조건은 null 과 같은 키
+        assertThat(count1).isEqualTo(10L);
+        assertThat(count2).isEqualTo(10L);
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(countCache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidateOnEntityChange() {
+        CountCache countCache = new CountCache(new CountCacheProperties());
+        AtomicInteger queries = new AtomicInteger();
+
+        countCache.get(CountCache.key("search"), queries::incrementAndGet);
+        countCache.onEntityChange(EntityChangeEvent.bulk(Member.class));
+        long count = countCache.get(CountCache.key("search"), queries::incrementAndGet);
+
+        assertThat(count).isEqualTo(2L);
+        assertThat(countCache.getMisses()).isEqualTo(2);
+    }
+}
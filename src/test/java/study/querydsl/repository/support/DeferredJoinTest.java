@@ -0,0 +1,90 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class DeferredJoinTest {
+
+    @Autowired
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void fetchJoinedContentQuery() {
+        JPAQuery<Member> content = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(member.age.goe(20));
+
+        // id 쿼리는 fetch join 없이, 조회 쿼리는 fetch join 으로 team 까지 함께 조회
+        List<Member> result = DeferredJoin.fetch(content, em, member.id,
+                query -> query.orderBy(member.age.desc()).offset(1).limit(2));
+
+        assertThat(result).extracting("username").containsExactly("member3", "member2");
+        assertThat(result).allSatisfy(found -> assertThat(Hibernate.isInitialized(found.getTeam())).isTrue());
+        assertThat(result).extracting("team.name").containsExactly("teamB", "teamA");
+        // 원래 쿼리의 fetch join 은 그대로
+        assertThat(content.getMetadata().getJoins().get(1).getFlags()).isNotEmpty();
+    }
+
+    @Test
+    public void collectionJoinUsesOffset() {
+        // team 1건이 회원 수만큼 여러 행이 되므로 team.id 로 페이징하지 않는다.
+        JPAQuery<Tuple> content = queryFactory
+                .select(team.name, member.username)
+                .from(team)
+                .join(team.members, member);
+
+        List<Tuple> result = DeferredJoin.fetch(content, em, team.id,
+                query -> query.orderBy(member.username.asc()).offset(1).limit(2));
+
+        assertThat(result).extracting(row -> row.get(team.name) + "/" + row.get(member.username))
+                .containsExactly("teamA/member2", "teamB/member3");
+    }
+
+    @Test
+    public void emptyPage() {
+        JPAQuery<Member> content = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin();
+
+        List<Member> result = DeferredJoin.fetch(content, em, member.id,
+                query -> query.orderBy(member.id.asc()).offset(10).limit(2));
+
+        assertThat(result).isEmpty();
+    }
+}
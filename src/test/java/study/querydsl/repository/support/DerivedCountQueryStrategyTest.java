@@ -0,0 +1,133 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class DerivedCountQueryStrategyTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    CountQueryStrategy countQueryStrategy;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40));
+    }
+
+    @Test
+    public void dropUnreferencedToOneLeftJoin() {
+        JPAQuery<?> content = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team).fetchJoin()
+                .where(member.age.goe(20))
+                .orderBy(member.username.desc())
+                .offset(1)
+                .limit(1);
+
+        JPAQuery<?> count = countQueryStrategy.countQuery(content, em);
+        assertThat(count.getMetadata().getJoins()).hasSize(1);
+        assertThat(count.getMetadata().getOrderBy()).isEmpty();
+        assertThat(count.fetchCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void keepReferencedAndCollectionJoins() {
+        // where 에서 team 을 참조하면 조인 유지
+        JPAQuery<?> filtered = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(team.name.eq("teamA"));
+        JPAQuery<?> count = countQueryStrategy.countQuery(filtered, em);
+        assertThat(count.getMetadata().getJoins()).hasSize(2);
+        assertThat(count.fetchCount()).isEqualTo(2);
+
+        // 컬렉션 조인은 행 수가 바뀌므로 유지
+        JPAQuery<?> collection = queryFactory
+                .select(team)
+                .from(team)
+                .leftJoin(team.members, member);
+        assertThat(countQueryStrategy.countQuery(collection, em).fetchCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void groupByCountsGroups() {
+        JPAQuery<?> grouped = queryFactory
+                .select(team.name, member.age.avg())
+                .from(member)
+                .leftJoin(member.team, team)
+                .groupBy(team.name)
+                .having(member.count().goe(1L))
+                .orderBy(team.name.asc());
+
+        // teamA, teamB, 팀 없음(null)
+        assertThat(countQueryStrategy.countQuery(grouped, em).fetchCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void singleKeyGroupByCountsDistinctKeys() {
+        JPAQuery<?> grouped = queryFactory
+                .select(team.name, member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc());
+
+        // having 이 없으면 그룹 행을 읽지 않고 count(distinct) 로 센다.
+        JPAQuery<?> count = countQueryStrategy.countQuery(grouped, em);
+        assertThat(count.getMetadata().getGroupBy()).isEmpty();
+        // teamA, teamB, 팀 없음(null)
+        assertThat(count.fetchCount()).isEqualTo(3);
+
+        JPAQuery<?> filtered = queryFactory
+                .select(team.name, member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.age.goe(20))
+                .groupBy(team.name);
+        // teamA, teamB, 팀 없음(null)
+        assertThat(countQueryStrategy.countQuery(filtered, em).fetchCount()).isEqualTo(3);
+
+        JPAQuery<?> withoutNull = queryFactory
+                .select(team.name, member.count())
+                .from(member)
+                .join(member.team, team)
+                .where(member.age.loe(20))
+                .groupBy(team.name);
+        assertThat(countQueryStrategy.countQuery(withoutNull, em).fetchCount()).isEqualTo(1);
+
+        JPAQuery<?> empty = queryFactory
+                .select(team.name, member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.age.gt(100))
+                .groupBy(team.name);
+        assertThat(countQueryStrategy.countQuery(empty, em).fetchCount()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,158 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchCondition.UsernameMatch;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+class MemberNearCacheTest {
+
+    @Test
+    public void searchCondition() {
+        MemberNearCache nearCache = loaded();
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("teamB");
+        cond.setAgeGoe(35);
+        assertThat(memberIds(nearCache.search(cond))).containsExactly(4L);
+
+        cond = new MemberSearchCondition();
+        cond.setUsername("MEMBER");
+        cond.setUsernameMatch(UsernameMatch.PREFIX);
+        cond.setAgeLoe(20);
+        assertThat(memberIds(nearCache.search(cond))).containsExactly(1L, 2L);
+
+        // 조건이 없으면 팀이 없는 회원도 포함한다. (left join)
+        assertThat(memberIds(nearCache.search(new MemberSearchCondition()))).containsExactly(1L, 2L, 3L, 4L, 5L);
+        List<MemberTeamDto> noTeam = nearCache.search(member.id.eq(5L));
+        assertThat(noTeam).extracting("teamName").containsOnlyNulls();
+    }
+
+    @Test
+    public void sqlNullSemantics() {
+        MemberNearCache nearCache = loaded();
+
+        // team.name <> 'teamA' 는 팀이 없는 회원(team.name = null)을 포함하지 않는다.
+        assertThat(memberIds(nearCache.search(team.name.ne("teamA")))).containsExactly(3L, 4L);
+        assertThat(memberIds(nearCache.search(team.name.ne("teamA").not()))).containsExactly(1L, 2L);
+        assertThat(memberIds(nearCache.search(team.name.isNull().or(member.age.between(20, 30))))).containsExactly(2L, 3L, 5L);
+        assertThat(memberIds(nearCache.search(member.id.in(1L, 3L, 99L)))).containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void entityChanges() {
+        MemberNearCache nearCache = loaded();
+
+        Team teamA = teamWithId("teamA-renamed", 1L);
+        nearCache.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.UPDATE, Team.class, 1L, teamA));
+        nearCache.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.INSERT, Member.class, 6L, new Member("member6", 60, teamA)));
+        nearCache.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.DELETE, Member.class, 1L, null));
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("teamA-renamed");
+        assertThat(memberIds(nearCache.search(cond))).containsExactly(2L, 6L);
+
+        cond.setTeamName("teamA");
+        assertThat(nearCache.search(cond)).isEmpty();
+    }
+
+    @Test
+    public void bulkChangesAfterCommit() {
+        List<Runnable> loads = new ArrayList<>();
+        MemberNearCache nearCache = loaded(loads);
+        EntityChangeEvent bulk = EntityChangeEvent.bulk(Member.class, Arrays.asList(1L, 2L));
+
+        // 커밋 전 이벤트는 무시 (다른 트랜잭션에는 아직 옛 값이 보인다.)
+        nearCache.onEntityChange(bulk.beforeCommit());
+        assertThat(loads).isEmpty();
+
+        // 커밋 후 이벤트는 적재 쓰레드에서 다시 읽는다. (member1 나이 +1, member2 삭제)
+        nearCache.onEntityChange(bulk);
+        assertThat(loads).hasSize(1);
+        assertThat(memberIds(nearCache.search(member.age.eq(10)))).containsExactly(1L);
+
+        loads.get(0).run();
+        assertThat(memberIds(nearCache.search(member.age.eq(10)))).isEmpty();
+        assertThat(memberIds(nearCache.search(member.age.eq(11)))).containsExactly(1L);
+        assertThat(memberIds(nearCache.search(member.id.eq(2L)))).isEmpty();
+    }
+
+    @Test
+    public void fallbackToSql() {
+        MemberNearCache notLoaded = new MemberNearCache(null, null, enabled());
+        assertThat(notLoaded.search(new MemberSearchCondition())).isNull();
+
+        MemberNearCache nearCache = loaded();
+        // 지원하지 않는 조건 (LIKE 패턴)
+        assertThat(nearCache.search(member.username.like("member%"))).isNull();
+        assertThat(nearCache.getMisses()).isEqualTo(1);
+    }
+
+    private static List<Long> memberIds(List<MemberTeamDto> result) {
+        assertThat(result).isNotNull();
+        return result.stream().map(MemberTeamDto::getMemberId).collect(Collectors.toList());
+    }
+
+    private static Team teamWithId(String name, Long id) {
+        Team result = new Team(name);
+        result.setId(id);
+        return result;
+    }
+
+    private static NearCacheProperties enabled() {
+        NearCacheProperties properties = new NearCacheProperties();
+        properties.setEnabled(true);
+        return properties;
+    }
+
+    private static MemberNearCache loaded() {
+        return loaded(new ArrayList<>());
+    }
+
+    // loads: 적재 쓰레드에 제출된 작업. 테스트에서 직접 실행한다.
+    private static MemberNearCache loaded(List<Runnable> loads) {
+        MemberNearCache nearCache = new MemberNearCache(null, null, enabled()) {
+            @Override
+            protected void loadTeams(BiConsumer<Long, String> sink) {
+                sink.accept(1L, "teamA");
+                sink.accept(2L, "teamB");
+            }
+
+            @Override
+            protected void loadMembers(Consumer<CachedMember> sink) {
+                sink.accept(new CachedMember(1L, "member1", 10, 1L));
+                sink.accept(new CachedMember(2L, "member2", 20, 1L));
+                sink.accept(new CachedMember(3L, "member3", 30, 2L));
+                sink.accept(new CachedMember(4L, "member4", 40, 2L));
+                sink.accept(new CachedMember(5L, "member5", 50, null));
+            }
+
+            @Override
+            protected List<CachedMember> reloadMembers(Collection<?> ids) {
+                return Collections.singletonList(new CachedMember(1L, "member1", 11, 1L));
+            }
+
+            @Override
+            protected void submitLoad(Runnable task) {
+                loads.add(task);
+            }
+        };
+        nearCache.load();
+        return nearCache;
+    }
+}
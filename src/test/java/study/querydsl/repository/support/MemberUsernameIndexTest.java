@@ -0,0 +1,173 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition.UsernameMatch;
+import study.querydsl.entity.Member;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+class MemberUsernameIndexTest {
+
+    @Test
+    public void prefixAndContains() {
+        MemberUsernameIndex index = seeded();
+
+        assertThat(index.candidates("mem", UsernameMatch.PREFIX)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.candidates("ber", UsernameMatch.PREFIX)).isEmpty();
+        assertThat(index.candidates("BER", UsernameMatch.CONTAINS)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(index.candidates("teamA", UsernameMatch.CONTAINS)).containsExactly(3L);
+        // 3글자 미만은 인덱스를 사용하지 않는다 (LIKE)
+        assertThat(index.candidates("me", UsernameMatch.PREFIX)).isNull();
+    }
+
+    @Test
+    public void applyEntityChanges() {
+        MemberUsernameIndex index = seeded();
+
+        index.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.INSERT, Member.class, 4L, new Member("member4")));
+        index.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.UPDATE, Member.class, 1L, new Member("renamed")));
+        index.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.DELETE, Member.class, 2L, null));
+
+        assertThat(index.candidates("member", UsernameMatch.PREFIX)).containsExactly(4L);
+        assertThat(index.candidates("name", UsernameMatch.CONTAINS)).containsExactly(1L);
+    }
+
+    @Test
+    public void bulkChangesAfterCommit() {
+        SeededIndex index = seeded();
+        EntityChangeEvent bulk = EntityChangeEvent.bulk(Member.class, Arrays.asList(1L, 3L));
+
+        // member1 이름 변경, member3 삭제
+        index.rows.put(1L, "renamed");
+        index.rows.remove(3L);
+
+        // 커밋 전 이벤트는 무시
+        index.onEntityChange(bulk.beforeCommit());
+        assertThat(index.reloads).isEmpty();
+
+        // 커밋 후 이벤트는 재구성 쓰레드에서 다시 읽는다.
+        index.onEntityChange(bulk);
+        assertThat(index.reloads).hasSize(1);
+        assertThat(index.candidates("teamA", UsernameMatch.CONTAINS)).containsExactly(3L);
+        index.reloads.get(0).run();
+
+        assertThat(index.candidates("mem", UsernameMatch.PREFIX)).containsExactly(2L);
+        assertThat(index.candidates("name", UsernameMatch.CONTAINS)).containsExactly(1L);
+        assertThat(index.candidates("teamA", UsernameMatch.CONTAINS)).isEmpty();
+    }
+
+    @Test
+    public void tooManyCandidates() {
+        UsernameIndexProperties properties = new UsernameIndexProperties();
+        properties.setMaxCandidates(1);
+        MemberUsernameIndex index = seeded(properties);
+
+        assertThat(index.candidates("member", UsernameMatch.PREFIX)).isNull();
+    }
+
+    @Test
+    public void notReadyBeforeRebuild() {
+        MemberUsernameIndex index = new MemberUsernameIndex(null, null, new UsernameIndexProperties());
+
+        assertThat(index.isReady()).isFalse();
+        assertThat(index.candidates("member", UsernameMatch.PREFIX)).isNull();
+    }
+
+    @Test
+    public void fallBackToLikeWhenIndexIsBehind() {
+        SeededIndex index = seeded(new UsernameIndexProperties());
+        assertThat(index.usernameMatches("mem", UsernameMatch.PREFIX))
+                .isNotEqualTo(member.username.startsWithIgnoreCase("mem"));
+
+        // 이벤트 없이 추가된 회원 (직접 실행한 SQL 등) -> 회원 수/max(id) 가 다르다.
+        index.watermark = new MemberUsernameIndex.Watermark(4, 4);
+        assertThat(index.checkFreshness()).isFalse();
+        assertThat(index.getDrifts()).isEqualTo(1);
+        assertThat(index.rebuilds).isEqualTo(1);
+        assertThat(index.candidates("mem", UsernameMatch.PREFIX)).isNull();
+        assertThat(index.usernameMatches("mem", UsernameMatch.PREFIX))
+                .isEqualTo(member.username.startsWithIgnoreCase("mem"));
+
+        // 다시 구성한 뒤에도 DB 와 일치를 확인하기 전까지는 사용하지 않는다.
+        index.rows.put(4L, "member4");
+        index.rebuild();
+        assertThat(index.candidates("mem", UsernameMatch.PREFIX)).isNull();
+        assertThat(index.checkFreshness()).isTrue();
+        assertThat(index.candidates("mem", UsernameMatch.PREFIX)).containsExactlyInAnyOrder(1L, 2L, 4L);
+    }
+
+    @Test
+    public void deletedMaxIdIsStillFresh() {
+        SeededIndex index = seeded(new UsernameIndexProperties());
+
+        // 가장 큰 id 가 삭제되어 DB 의 max(id) 가 작아져도 회원 수가 같으면 최신
+        index.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.DELETE, Member.class, 3L, null));
+        index.watermark = new MemberUsernameIndex.Watermark(2, 2);
+
+        assertThat(index.checkFreshness()).isTrue();
+        assertThat(index.candidates("mem", UsernameMatch.PREFIX)).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    private static SeededIndex seeded() {
+        return seeded(new UsernameIndexProperties());
+    }
+
+    private static SeededIndex seeded(UsernameIndexProperties properties) {
+        SeededIndex index = new SeededIndex(properties);
+        index.rebuild();
+        index.checkFreshness();
+        return index;
+    }
+
+    // DB 대신 rows 로 적재하고, watermark 를 DB 의 회원 수/max(id) 로 사용한다.
+    private static class SeededIndex extends MemberUsernameIndex {
+
+        private final Map<Long, String> rows = new LinkedHashMap<>();
+        private Watermark watermark = new Watermark(3, 3);
+        private int rebuilds;
+        private final List<Runnable> reloads = new ArrayList<>();
+
+        private SeededIndex(UsernameIndexProperties properties) {
+            super(null, null, properties);
+            rows.put(1L, "member1");
+            rows.put(2L, "Member2");
+            rows.put(3L, "teamA-leader");
+        }
+
+        @Override
+        protected void loadAll(BiConsumer<Long, String> sink) {
+            rows.forEach(sink);
+        }
+
+        @Override
+        protected Watermark queryWatermark() {
+            return watermark;
+        }
+
+        @Override
+        protected Map<Long, String> reloadMembers(List<Long> ids) {
+            Map<Long, String> reloaded = new HashMap<>();
+            ids.stream().filter(rows::containsKey).forEach(id -> reloaded.put(id, rows.get(id)));
+            return reloaded;
+        }
+
+        @Override
+        protected void submitReload(Runnable task) {
+            reloads.add(task);
+        }
+
+        @Override
+        public void rebuildAsync() {
+            rebuilds++;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NPlusOneDetectorTest {
+
+    private static final String LOAD_TEAM =
+            "/* load study.querydsl.entity.Team */ select team0_.team_id as team_id1_1_0_ from team team0_ where team0_.team_id=";
+
+    @Test
+    public void fingerprintIgnoresLiterals() {
+        assertThat(NPlusOneDetector.fingerprint(LOAD_TEAM + "1"))
+                .isEqualTo(NPlusOneDetector.fingerprint(LOAD_TEAM + "23"));
+        assertThat(NPlusOneDetector.fingerprint("select * from member where member_id in (?, ?, ?)"))
+                .isEqualTo(NPlusOneDetector.fingerprint("select * from member where member_id in (?)"));
+        assertThat(NPlusOneDetector.fingerprint("select * from member where username = 'a'"))
+                .isNotEqualTo(NPlusOneDetector.fingerprint("select * from team where name = 'a'"));
+    }
+
+    @Test
+    public void raiseWhenThresholdCrossed() {
+        NPlusOneProperties properties = new NPlusOneProperties();
+        properties.setThreshold(3);
+        properties.setAction(NPlusOneProperties.Action.EXCEPTION);
+        NPlusOneDetector detector = new NPlusOneDetector(properties);
+
+        try (NPlusOneDetector.Scope scope = detector.open("GET /v1/members")) {
+            detector.inspect("select member0_.member_id from member member0_");
+            detector.inspect(LOAD_TEAM + "1");
+            detector.inspect(LOAD_TEAM + "2");
+            assertThat(scope.getStatements()).isEqualTo(3);
+
+            assertThatThrownBy(() -> detector.inspect(LOAD_TEAM + "3"))
+                    .isInstanceOf(NPlusOneDetector.NPlusOneException.class)
+                    .hasMessageContaining("GET /v1/members")
+                    .hasMessageContaining("NPlusOneDetectorTest.raiseWhenThresholdCrossed");
+        }
+    }
+
+    @Test
+    public void ignoreSuppressedChunks() {
+        NPlusOneProperties properties = new NPlusOneProperties();
+        properties.setThreshold(3);
+        properties.setAction(NPlusOneProperties.Action.EXCEPTION);
+        NPlusOneDetector detector = new NPlusOneDetector(properties);
+        String loadChunk = "select member0_.member_id from member member0_ where member0_.member_id in (?, ?)";
+
+        try (NPlusOneDetector.Scope scope = detector.open("POST /members:bulk")) {
+            // 청크로 나눈 IN 조회는 의도적인 반복이므로 세지 않는다.
+            try (NPlusOneDetector.Suppression suppression = NPlusOneDetector.suppress()) {
+                for (int i = 0; i < 10; i++) {
+                    detector.inspect(loadChunk);
+                }
+                try (NPlusOneDetector.Suppression nested = NPlusOneDetector.suppress()) {
+                    detector.inspect(loadChunk);
+                }
+                // 안쪽 구간이 닫혀도 바깥 구간은 유지
+                detector.inspect(loadChunk);
+            }
+            assertThat(scope.getStatements()).isEqualTo(12);
+
+            // 구간 밖에서는 다시 센다.
+            detector.inspect(loadChunk);
+            detector.inspect(loadChunk);
+            assertThatThrownBy(() -> detector.inspect(loadChunk))
+                    .isInstanceOf(NPlusOneDetector.NPlusOneException.class);
+        }
+    }
+
+    @Test
+    public void ignoreOutsideScope() {
+        NPlusOneProperties properties = new NPlusOneProperties();
+        properties.setThreshold(1);
+        properties.setAction(NPlusOneProperties.Action.EXCEPTION);
+        NPlusOneDetector detector = new NPlusOneDetector(properties);
+
+        // 요청/트랜잭션 범위 밖의 SQL 은 세지 않는다.
+        assertThat(detector.inspect(LOAD_TEAM + "1")).isEqualTo(LOAD_TEAM + "1");
+    }
+}
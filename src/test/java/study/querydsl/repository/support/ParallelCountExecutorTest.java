@@ -0,0 +1,205 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberTestRepository;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+// count 는 별도 커넥션에서 실행되므로 데이터를 커밋하고 테스트 후 지운다. (@Transactional 을 쓰지 않음)
+@SpringBootTest
+class ParallelCountExecutorTest {
+
+    @Autowired EntityManager em;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired TeamStatsAggregator teamStatsAggregator;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ParallelCountExecutor executor;
+
+    @BeforeEach
+    public void before() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamA));
+            em.persist(new Member("member4", 40, teamA));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void concurrentSubmitAndAwait() {
+        executor = new ParallelCountExecutor(em, transactionManager, properties(2, 10, Duration.ofSeconds(5)));
+
+        Future<Long> all = executor.submit(query -> query.selectFrom(member));
+        Future<Long> ageGoe20 = executor.submit(query -> query.selectFrom(member).where(member.age.goe(20)));
+
+        assertThat(all).isNotNull();
+        assertThat(ageGoe20).isNotNull();
+        assertThat(executor.await(all)).isEqualTo(4L);
+        assertThat(executor.await(ageGoe20)).isEqualTo(3L);
+    }
+
+    @Test
+    public void sequentialInWriteTransaction() {
+        executor = new ParallelCountExecutor(em, transactionManager, properties(2, 10, Duration.ofSeconds(5)));
+
+        // 별도 커넥션은 쓰기 트랜잭션의 커밋되지 않은 변경을 볼 수 없으므로 실행하지 않는다.
+        Future<Long> inWrite = new TransactionTemplate(transactionManager)
+                .execute(status -> executor.submit(query -> query.selectFrom(member)));
+        assertThat(inWrite).isNull();
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Future<Long> inReadOnly = readOnly.execute(status -> executor.submit(query -> query.selectFrom(member)));
+        assertThat(inReadOnly).isNotNull();
+        assertThat(executor.await(inReadOnly)).isEqualTo(4L);
+    }
+
+    @Test
+    public void queryTimeout() {
+        executor = new ParallelCountExecutor(em, transactionManager, properties(1, 10, Duration.ofMillis(100)));
+
+        Future<Long> slow = executor.submit(query -> {
+            blocked();
+            return query.selectFrom(member);
+        });
+
+        assertThatThrownBy(() -> executor.await(slow)).isInstanceOf(QueryTimeoutException.class);
+        assertThat(slow.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void rejectWhenQueueIsFull() {
+        executor = new ParallelCountExecutor(em, transactionManager, properties(1, 1, Duration.ofSeconds(5)));
+
+        Future<Long> running = executor.submit(this::blockedCount);
+        Future<Long> queued = executor.submit(this::blockedCount);
+        // 큐가 가득 차면 null -> 호출 측에서 순차 실행
+        Future<Long> rejected = executor.submit(this::blockedCount);
+
+        assertThat(running).isNotNull();
+        assertThat(queued).isNotNull();
+        assertThat(rejected).isNull();
+
+        release.countDown();
+        assertThat(executor.await(running)).isEqualTo(4L);
+        assertThat(executor.await(queued)).isEqualTo(4L);
+    }
+
+    @Test
+    public void cancelRunningCount() throws Exception {
+        executor = new ParallelCountExecutor(em, transactionManager, properties(1, 10, Duration.ofSeconds(5)));
+
+        Future<Long> count = executor.submit(this::blockedCount);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        count.cancel(true);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void cancelCountWhenNotNeeded() {
+        PagingProperties properties = properties(1, 10, Duration.ofSeconds(5));
+        properties.setCountExecution(CountExecution.PARALLEL);
+        RecordingExecutor recording = new RecordingExecutor(properties);
+        executor = recording;
+
+        MemberTestRepository repository = new MemberTestRepository(teamStatsAggregator);
+        repository.setEntityManager(em);
+        repository.setParallelCountExecutor(recording);
+
+        // 4건 < 페이지 크기 10 이므로 전체 수는 content 로 계산되고 count 는 취소된다.
+        Page<Member> page = repository.applyPagination(new MemberSearchCondition(), PageRequest.of(0, 10));
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(recording.futures).hasSize(1);
+        assertThat(recording.futures.get(0).isCancelled()).isTrue();
+    }
+
+    private JPAQuery<Member> blockedCount(JPAQueryFactory query) {
+        blocked();
+        return query.selectFrom(member);
+    }
+
+    private void blocked() {
+        started.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static PagingProperties properties(int threads, int queueCapacity, Duration queryTimeout) {
+        PagingProperties properties = new PagingProperties();
+        properties.setParallelCountThreads(threads);
+        properties.setParallelCountQueueCapacity(queueCapacity);
+        properties.setQueryTimeout(queryTimeout);
+        return properties;
+    }
+
+    // content 조회가 끝날 때까지 count 가 끝나지 않도록 막고, 제출된 Future 를 기록
+    private class RecordingExecutor extends ParallelCountExecutor {
+
+        private final List<Future<Long>> futures = new ArrayList<>();
+
+        private RecordingExecutor(PagingProperties properties) {
+            super(em, transactionManager, properties);
+        }
+
+        @Override
+        public Future<Long> submitDerived(Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                          CountQueryStrategy countQueryStrategy, UnaryOperator<LongSupplier> decorator) {
+            Future<Long> future = super.submitDerived(query -> {
+                blocked();
+                return contentQuery.apply(query);
+            }, countQueryStrategy, decorator);
+            futures.add(future);
+            return future;
+        }
+    }
+}
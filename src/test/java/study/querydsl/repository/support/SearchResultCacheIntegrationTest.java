@@ -0,0 +1,98 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋 이벤트로 무효화되는지 확인하므로 @Transactional 을 쓰지 않고 테스트 후 지운다.
+@SpringBootTest(properties = {
+        "querydsl.search-cache.enabled=true",
+        "querydsl.search-cache.stale-while-revalidate=0s"
+})
+class SearchResultCacheIntegrationTest {
+
+    @Autowired EntityManager em;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired MemberRepository memberRepository;
+    @Autowired SearchResultCache searchResultCache;
+
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    public void before() {
+        searchResultCache.invalidateAll();
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+        searchResultCache.invalidateAll();
+    }
+
+    @Test
+    public void committedChangeInvalidatesEntry() {
+        long hits = searchResultCache.getHits();
+
+        assertThat(search().getTotalElements()).isEqualTo(2);
+        assertThat(search().getTotalElements()).isEqualTo(2);
+        assertThat(searchResultCache.getHits()).isEqualTo(hits + 1);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Team teamA = em.createQuery("select t from Team t", Team.class).getSingleResult();
+            em.persist(new Member("member3", 30, teamA));
+        });
+
+        // 커밋 후 Member 버전이 바뀌었으므로 다시 조회
+        Page<MemberTeamDto> page = search();
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting("username").contains("member3");
+    }
+
+    @Test
+    public void writeTransactionBypassesCache() {
+        assertThat(search().getTotalElements()).isEqualTo(2);
+
+        // 커밋되지 않은 변경을 본 결과는 캐시하지 않는다.
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Team teamA = em.createQuery("select t from Team t", Team.class).getSingleResult();
+            em.persist(new Member("member3", 30, teamA));
+            em.flush();
+            assertThat(memberRepository.searchPagingSimple(new MemberSearchCondition(), PageRequest.of(0, 10))
+                    .getTotalElements()).isEqualTo(3);
+            status.setRollbackOnly();
+        });
+
+        assertThat(search().getTotalElements()).isEqualTo(2);
+    }
+
+    private Page<MemberTeamDto> search() {
+        return readOnly.execute(status ->
+                memberRepository.searchPagingSimple(new MemberSearchCondition(), PageRequest.of(0, 10)));
+    }
+}
@@ -0,0 +1,109 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchResultCacheTest {
+
+    private final TableVersions tableVersions = new TableVersions();
+
+    @Test
+    public void canonicalKey() {
+        MemberSearchCondition cond1 = new MemberSearchCondition();
+        cond1.setUsername("");
+        cond1.setAgeGoe(10);
+        MemberSearchCondition cond2 = new MemberSearchCondition();
+        cond2.setAgeGoe(10);
+
+        assertThat(SearchResultCache.key("search", cond1, PageRequest.of(0, 10, Sort.by("age"))))
+                .isEqualTo(SearchResultCache.key("search", cond2, PageRequest.of(0, 10, Sort.by("age"))))
+                .isNotEqualTo(SearchResultCache.key("search", cond2, PageRequest.of(1, 10, Sort.by("age"))));
+    }
+
+    @Test
+    public void staleWhileRevalidate() {
+        ManualRefreshCache cache = new ManualRefreshCache(properties(Duration.ofMinutes(1), Duration.ofMinutes(1)));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get("k", () -> "v" + loads.incrementAndGet(), Member.class, Team.class)).isEqualTo("v1");
+        assertThat(cache.get("k", () -> "v" + loads.incrementAndGet(), Member.class, Team.class)).isEqualTo("v1");
+
+        // Team 변경 -> 이전 결과를 반환하고 갱신은 한 번만 예약
+        tableVersions.onEntityChange(EntityChangeEvent.bulk(Team.class));
+        assertThat(cache.get("k", () -> "v" + loads.incrementAndGet(), Member.class, Team.class)).isEqualTo("v1");
+        assertThat(cache.get("k", () -> "v" + loads.incrementAndGet(), Member.class, Team.class)).isEqualTo("v1");
+        assertThat(cache.refreshes).hasSize(1);
+        assertThat(loads).hasValue(1);
+
+        cache.refreshes.get(0).run();
+        assertThat(cache.get("k", () -> "v" + loads.incrementAndGet(), Member.class, Team.class)).isEqualTo("v2");
+
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getStaleHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHitRatio()).isEqualTo(0.8);
+    }
+
+    @Test
+    public void reloadWithoutStaleWindow() {
+        ManualRefreshCache cache = new ManualRefreshCache(properties(Duration.ofMinutes(1), Duration.ZERO));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("k", () -> "v" + loads.incrementAndGet(), Member.class);
+        // 다른 테이블 변경은 영향 없음
+        tableVersions.onEntityChange(EntityChangeEvent.bulk(Team.class));
+        assertThat(cache.get("k", () -> "v" + loads.incrementAndGet(), Member.class)).isEqualTo("v1");
+
+        tableVersions.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.INSERT, Member.class, 1L, null));
+        assertThat(cache.get("k", () -> "v" + loads.incrementAndGet(), Member.class)).isEqualTo("v2");
+        assertThat(cache.refreshes).isEmpty();
+    }
+
+    @Test
+    public void maxSize() {
+        SearchCacheProperties properties = properties(Duration.ofMinutes(1), Duration.ZERO);
+        properties.setMaxSize(2);
+        ManualRefreshCache cache = new ManualRefreshCache(properties);
+
+        cache.get("k1", () -> "v1", Member.class);
+        cache.get("k2", () -> "v2", Member.class);
+        cache.get("k3", () -> "v3", Member.class);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("k1", () -> "reloaded", Member.class)).isEqualTo("reloaded");
+    }
+
+    private static SearchCacheProperties properties(Duration ttl, Duration staleWhileRevalidate) {
+        SearchCacheProperties properties = new SearchCacheProperties();
+        properties.setEnabled(true);
+        properties.setTtl(ttl);
+        properties.setStaleWhileRevalidate(staleWhileRevalidate);
+        return properties;
+    }
+
+    // 갱신 작업을 쌓아 두고 테스트에서 직접 실행
+    private class ManualRefreshCache extends SearchResultCache {
+
+        private final List<Runnable> refreshes = new ArrayList<>();
+
+        private ManualRefreshCache(SearchCacheProperties properties) {
+            super(properties, tableVersions, null);
+        }
+
+        @Override
+        protected void submitRefresh(Runnable task) {
+            refreshes.add(task);
+        }
+    }
+}
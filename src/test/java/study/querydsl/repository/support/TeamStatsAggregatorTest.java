@@ -0,0 +1,217 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Projections;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+
+class TeamStatsAggregatorTest {
+
+    @Test
+    public void loadedStats() {
+        TeamStatsAggregator aggregator = new SeededAggregator();
+        aggregator.load();
+
+        assertThat(aggregator.stats())
+                .extracting("teamName", "memberCount", "avgAge", "minAge", "maxAge")
+                .containsExactly(
+                        tuple("teamA", 2L, 15.0, 10, 20),
+                        tuple("teamB", 2L, 35.0, 30, 40),
+                        tuple("teamC", 0L, null, null, null));
+    }
+
+    @Test
+    public void incrementalUpdates() {
+        TeamStatsAggregator aggregator = new SeededAggregator();
+        aggregator.load();
+        Team teamA = team(1L, "teamA");
+        Team teamB = team(2L, "teamB");
+
+        // member4(40, teamB) -> teamA 로 이동, member1(10) 삭제, member5(50, teamB) 추가
+        aggregator.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.UPDATE, Member.class, 4L, new Member("member4", 40, teamA)));
+        aggregator.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.DELETE, Member.class, 1L, null));
+        aggregator.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.INSERT, Member.class, 5L, new Member("member5", 50, teamB)));
+
+        assertThat(aggregator.stats())
+                .extracting("teamName", "memberCount", "avgAge", "minAge", "maxAge")
+                .containsExactly(
+                        tuple("teamA", 2L, 30.0, 20, 40),
+                        tuple("teamB", 2L, 40.0, 30, 50),
+                        tuple("teamC", 0L, null, null, null));
+    }
+
+    @Test
+    public void estimateCount() {
+        TeamStatsAggregator aggregator = new SeededAggregator();
+        aggregator.load();
+        // 팀이 없는 회원
+        aggregator.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.INSERT, Member.class, 5L, new Member("member5", 50)));
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+        assertThat(aggregator.estimateCount(cond)).hasValue(5L);
+
+        cond.setAgeGoe(20);
+        cond.setAgeLoe(40);
+        assertThat(aggregator.estimateCount(cond)).hasValue(3L);
+
+        cond.setTeamName("teamA");
+        assertThat(aggregator.estimateCount(cond)).hasValue(1L);
+
+        // username 조건은 추정하지 않는다.
+        cond.setUsername("member1");
+        assertThat(aggregator.estimateCount(cond)).isEmpty();
+    }
+
+    @Test
+    public void bulkChangesAfterCommit() {
+        SeededAggregator aggregator = new SeededAggregator();
+        aggregator.load();
+        EntityChangeEvent bulk = EntityChangeEvent.bulk(Member.class, Arrays.asList(1L, 3L));
+
+        // member1 나이 10 -> 12, member3 삭제
+        aggregator.rows.set(0, new Object[]{1L, 1L, 12});
+        aggregator.rows.remove(2);
+
+        // 커밋 전 이벤트는 무시
+        aggregator.onEntityChange(bulk.beforeCommit());
+        assertThat(aggregator.loads).isEmpty();
+
+        // 커밋 후 이벤트는 team-stats 쓰레드에서 다시 읽는다.
+        aggregator.onEntityChange(bulk);
+        assertThat(aggregator.loads).hasSize(1);
+        aggregator.loads.get(0).run();
+
+        assertThat(aggregator.stats())
+                .extracting("teamName", "memberCount", "avgAge", "minAge", "maxAge")
+                .containsExactly(
+                        tuple("teamA", 2L, 16.0, 12, 20),
+                        tuple("teamB", 1L, 40.0, 40, 40),
+                        tuple("teamC", 0L, null, null, null));
+    }
+
+    @Test
+    public void groupByOverMaxMembers() {
+        TeamStatsProperties properties = new TeamStatsProperties();
+        properties.setMaxMembers(3);
+        SeededAggregator aggregator = new SeededAggregator(properties);
+        aggregator.load();
+
+        // 회원 4명 > 3 -> 메모리에 두지 않고 group by
+        assertThat(aggregator.isReady()).isFalse();
+        assertThat(aggregator.estimateCount(new MemberSearchCondition())).isEmpty();
+        assertThat(aggregator.stats()).extracting("memberCount").containsExactly(2L, 2L, 0L);
+    }
+
+    @Test
+    public void groupByWhenMembersGrowOverMax() {
+        TeamStatsProperties properties = new TeamStatsProperties();
+        properties.setMaxMembers(4);
+        SeededAggregator aggregator = new SeededAggregator(properties);
+        aggregator.load();
+        assertThat(aggregator.isReady()).isTrue();
+
+        aggregator.onEntityChange(new EntityChangeEvent(EntityChangeEvent.Type.INSERT, Member.class, 5L, new Member("member5", 50)));
+
+        assertThat(aggregator.isReady()).isFalse();
+        assertThat(aggregator.estimateCount(new MemberSearchCondition())).isEmpty();
+    }
+
+    @Test
+    public void reconcileReloadsOnDrift() {
+        SeededAggregator aggregator = new SeededAggregator();
+        aggregator.load();
+        assertThat(aggregator.reconcile()).isTrue();
+
+        // 이벤트 없이 DB 만 바뀐 경우 (ex. 다른 애플리케이션의 변경)
+        aggregator.rows.add(new Object[]{6L, 1L, 60});
+        assertThat(aggregator.reconcile()).isFalse();
+        assertThat(aggregator.getDrifts()).isEqualTo(1);
+        assertThat(aggregator.stats().get(0).getMemberCount()).isEqualTo(3L);
+        assertThat(aggregator.reconcile()).isTrue();
+    }
+
+    private static Team team(Long id, String name) {
+        Team result = new Team(name);
+        result.setId(id);
+        return result;
+    }
+
+    // DB 대신 rows 로 적재하고, group by 결과는 rows 를 새로 적재한 집계로 대신한다.
+    private static class SeededAggregator extends TeamStatsAggregator {
+
+        private final List<Object[]> rows = new ArrayList<>(Arrays.asList(
+                new Object[]{1L, 1L, 10},
+                new Object[]{2L, 1L, 20},
+                new Object[]{3L, 2L, 30},
+                new Object[]{4L, 2L, 40}
+        ));
+        private final List<Runnable> loads = new ArrayList<>();
+
+        private SeededAggregator() {
+            this(new TeamStatsProperties());
+        }
+
+        private SeededAggregator(TeamStatsProperties properties) {
+            super(null, null, properties);
+        }
+
+        @Override
+        protected void loadTeams(BiConsumer<Long, String> sink) {
+            sink.accept(1L, "teamA");
+            sink.accept(2L, "teamB");
+            sink.accept(3L, "teamC");
+        }
+
+        @Override
+        protected void loadMembers(MemberSink sink) {
+            rows.forEach(row -> sink.accept((Long) row[0], (Long) row[1], (Integer) row[2]));
+        }
+
+        @Override
+        protected Map<Long, Tuple> reloadMembers(Collection<?> ids) {
+            Map<Long, Tuple> reloaded = new HashMap<>();
+            rows.stream()
+                    .filter(row -> ids.contains(row[0]))
+                    .forEach(row -> reloaded.put((Long) row[0],
+                            Projections.tuple(member.id, member.team.id, member.age).newInstance(row)));
+            return reloaded;
+        }
+
+        @Override
+        protected void submitLoad(Runnable task) {
+            loads.add(task);
+        }
+
+        @Override
+        protected List<TeamStatsDto> queryStats() {
+            TeamStatsAggregator fresh = new TeamStatsAggregator(null, null, new TeamStatsProperties()) {
+                @Override
+                protected void loadTeams(BiConsumer<Long, String> sink) {
+                    SeededAggregator.this.loadTeams(sink);
+                }
+
+                @Override
+                protected void loadMembers(MemberSink sink) {
+                    SeededAggregator.this.loadMembers(sink);
+                }
+            };
+            fresh.load();
+            return fresh.stats();
+        }
+    }
+}